@@ -0,0 +1,67 @@
+package com.maersk.wiremock;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Small key/value progress file. Every save rewrites a sibling temporary file and moves it
+ * over the checkpoint, so a crash leaves either the previous or the new state behind.
+ */
+public class Checkpoint {
+
+    private final Path file;
+    private final Properties properties = new Properties();
+
+    public Checkpoint(Path file) {
+        this.file = file;
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read checkpoint " + file, e);
+            }
+        }
+    }
+
+    public synchronized String get(String key) {
+        return properties.getProperty(key);
+    }
+
+    public synchronized Map<String, String> entries() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        properties.stringPropertyNames().forEach(key -> entries.put(key, properties.getProperty(key)));
+        return entries;
+    }
+
+    public synchronized void put(String key, String value) {
+        properties.setProperty(key, value);
+        save();
+    }
+
+    public synchronized void putAll(Map<String, String> values) {
+        values.forEach(properties::setProperty);
+        save();
+    }
+
+    private void save() {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                properties.store(writer, null);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint " + file, e);
+        }
+    }
+}
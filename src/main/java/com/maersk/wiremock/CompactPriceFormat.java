@@ -0,0 +1,141 @@
+package com.maersk.wiremock;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schema based binary encoding of price records, in the spirit of protobuf: integers are
+ * varints, hours are deltas against the previous row and prices fixed-point micro-units.
+ *
+ * <pre>
+ * payload: u8 version | varint area count | areas | varint row count | rows
+ * area:    varint length | ASCII name
+ * row:     u8 presence flags | [varint area index] | [zigzag hour delta] | [zigzag DKK micros] | [zigzag EUR micros]
+ * </pre>
+ *
+ * Areas are listed once and referenced by their index, so the payload does not depend on the
+ * codes this process happened to assign in {@link PriceAreas}.
+ */
+public final class CompactPriceFormat {
+
+    static final byte VERSION = 1;
+
+    private static final int HAS_AREA = 1;
+    private static final int HAS_HOUR = 2;
+    private static final int HAS_DKK = 4;
+    private static final int HAS_EUR = 8;
+
+    private CompactPriceFormat() {
+    }
+
+    public static byte[] encode(List<EnergyDataRecord> records) {
+        Map<String, Integer> areas = new LinkedHashMap<>();
+        for (EnergyDataRecord record : records) {
+            if (record.PriceArea != null) {
+                areas.putIfAbsent(record.PriceArea, areas.size());
+            }
+        }
+        var out = new ByteArrayOutputStream(16 + records.size() * 12);
+        out.write(VERSION);
+        writeVarint(out, areas.size());
+        for (String area : areas.keySet()) {
+            byte[] name = area.getBytes(StandardCharsets.US_ASCII);
+            writeVarint(out, name.length);
+            out.write(name, 0, name.length);
+        }
+        writeVarint(out, records.size());
+        long previousHour = 0;
+        for (EnergyDataRecord record : records) {
+            boolean hasHour = record.HourUTC != null || record.HourDK != null;
+            long dkk = PriceColumns.parsePrice(record.SpotPriceDKK);
+            long eur = PriceColumns.parsePrice(record.SpotPriceEUR);
+            int flags = (record.PriceArea != null ? HAS_AREA : 0) | (hasHour ? HAS_HOUR : 0)
+                    | (dkk != PriceColumns.NO_PRICE ? HAS_DKK : 0) | (eur != PriceColumns.NO_PRICE ? HAS_EUR : 0);
+            out.write(flags);
+            if (record.PriceArea != null) {
+                writeVarint(out, areas.get(record.PriceArea));
+            }
+            if (hasHour) {
+                int hour = PriceColumns.epochHour(record);
+                writeVarint(out, zigzag(hour - previousHour));
+                previousHour = hour;
+            }
+            if (dkk != PriceColumns.NO_PRICE) {
+                writeVarint(out, zigzag(dkk));
+            }
+            if (eur != PriceColumns.NO_PRICE) {
+                writeVarint(out, zigzag(eur));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static List<EnergyDataRecord> decode(byte[] payload) {
+        var in = ByteBuffer.wrap(payload);
+        if (in.get() != VERSION) {
+            throw new IllegalArgumentException("Unsupported compact price format version " + payload[0]);
+        }
+        var areas = new String[(int) readVarint(in)];
+        for (int i = 0; i < areas.length; i++) {
+            byte[] name = new byte[(int) readVarint(in)];
+            in.get(name);
+            areas[i] = new String(name, StandardCharsets.US_ASCII);
+        }
+        int rows = (int) readVarint(in);
+        List<EnergyDataRecord> records = new ArrayList<>(rows);
+        long hour = 0;
+        for (int i = 0; i < rows; i++) {
+            int flags = in.get();
+            String area = (flags & HAS_AREA) != 0 ? areas[(int) readVarint(in)] : null;
+            if ((flags & HAS_HOUR) != 0) {
+                hour += unzigzag(readVarint(in));
+            }
+            long dkk = (flags & HAS_DKK) != 0 ? unzigzag(readVarint(in)) : PriceColumns.NO_PRICE;
+            long eur = (flags & HAS_EUR) != 0 ? unzigzag(readVarint(in)) : PriceColumns.NO_PRICE;
+            EnergyDataRecord record;
+            if ((flags & HAS_HOUR) != 0) {
+                record = PriceColumns.toRecord((int) hour, PriceAreas.UNKNOWN, dkk, eur);
+            } else {
+                record = new EnergyDataRecord();
+                record.SpotPriceDKK = PriceColumns.formatPrice(dkk);
+                record.SpotPriceEUR = PriceColumns.formatPrice(eur);
+            }
+            record.PriceArea = area;
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
@@ -0,0 +1,35 @@
+package com.maersk.wiremock;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+
+/**
+ * Point in time by which the caller needs an answer, carried in the Reactor {@link Context} from
+ * {@link Router} down to the upstream calls made on its behalf.
+ */
+public final class Deadline {
+
+    private static final Object KEY = Deadline.class;
+
+    private final long expiresAt;
+
+    private Deadline(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public static Context in(Duration budget) {
+        return Context.of(KEY, new Deadline(System.nanoTime() + budget.toNanos()));
+    }
+
+    /**
+     * Time left before the deadline in {@code context}, or {@code fallback} if there is none.
+     * Never negative, so an expired deadline times out straight away.
+     */
+    public static Duration remaining(ContextView context, Duration fallback) {
+        return context.<Deadline>getOrEmpty(KEY)
+                .map(deadline -> Duration.ofNanos(Math.max(deadline.expiresAt - System.nanoTime(), 0)))
+                .orElse(fallback);
+    }
+}
@@ -0,0 +1,284 @@
+package com.maersk.wiremock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON bodies of {@code /data} responses, serialized once per version of the data they hold and
+ * then written as-is together with a strong {@code ETag} derived from their bytes. When
+ * compression is enabled a gzip variant is produced alongside, so clients accepting gzip cost
+ * no more per request than those that do not. Projections onto fewer {@link PriceFields} are
+ * written with just those fields, once per data version and field set, rather than cut down
+ * from a full encoding.
+ */
+@Component
+public class EncodedResponses {
+
+    private final ObjectWriter writer;
+    private final int maxEntries;
+    private final boolean compress;
+    private final EnergyMetrics metrics;
+    // encodings in progress are cached too, so concurrent requests for one body wait for a
+    // single encode while requests for other bodies go ahead
+    private final Map<EnergyData, CompletableFuture<Encoded>> byData = new WeakHashMap<>();
+    private final Map<String, Pending> byQuery;
+
+    public EncodedResponses(ObjectMapper objectMapper,
+                            @Value("${energy.cache.max-entries:64}") int maxEntries,
+                            @Value("${energy.compression.enabled:true}") boolean compress,
+                            EnergyMetrics metrics) {
+        this.writer = objectMapper.writerFor(EnergyData.class);
+        this.maxEntries = maxEntries;
+        this.compress = compress;
+        this.metrics = metrics;
+        this.byQuery = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Pending> eldest) {
+                return size() > EncodedResponses.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * The encoded form of {@code data}. Upstream responses are immutable once decoded and a
+     * refresh yields a new instance, so the instance itself identifies the version.
+     */
+    public Encoded encode(EnergyData data) {
+        return encode(data, PriceFields.ALL);
+    }
+
+    /**
+     * The encoded form of {@code data} restricted to {@code fields}. The first request for an
+     * instance encodes just those fields, which for a projection pushed down upstream are the
+     * only ones it will ever be asked for; other field sets are projected from it.
+     */
+    public Encoded encode(EnergyData data, PriceFields fields) {
+        CompletableFuture<Encoded> encoded;
+        boolean owner = false;
+        synchronized (byData) {
+            encoded = byData.get(data);
+            if (encoded == null) {
+                encoded = new CompletableFuture<>();
+                byData.put(data, encoded);
+                owner = true;
+            }
+        }
+        if (owner) {
+            try {
+                encoded.complete(write(data, fields, 0));
+            } catch (RuntimeException e) {
+                synchronized (byData) {
+                    byData.remove(data);
+                }
+                encoded.completeExceptionally(e);
+            }
+        }
+        return await(encoded).project(fields);
+    }
+
+    /**
+     * The encoded result of the local query {@code key} against the store at {@code version},
+     * holding only {@code fields}; {@code data} is only evaluated when nothing is cached for that
+     * version, and outside the lock guarding the cache. The key is expected to include the
+     * field selection.
+     */
+    public Encoded encode(String key, long version, PriceFields fields, Supplier<EnergyData> data) {
+        Pending pending;
+        boolean owner = false;
+        synchronized (byQuery) {
+            pending = byQuery.get(key);
+            // an entry for a later version than the caller saw is at least as fresh
+            if (pending == null || pending.version < version) {
+                pending = new Pending(version);
+                byQuery.put(key, pending);
+                owner = true;
+            }
+        }
+        if (owner) {
+            try {
+                pending.encoded.complete(write(data.get(), fields, version));
+            } catch (RuntimeException e) {
+                synchronized (byQuery) {
+                    byQuery.remove(key, pending);
+                }
+                pending.encoded.completeExceptionally(e);
+            }
+        }
+        return await(pending.encoded);
+    }
+
+    private static Encoded await(CompletableFuture<Encoded> encoded) {
+        try {
+            return encoded.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private Encoded write(EnergyData data, PriceFields fields, long version) {
+        if (fields.isAll()) {
+            return write(data).withVersion(version);
+        }
+        return write(data.records == null ? List.of() : data.records, fields, version);
+    }
+
+    private Encoded write(EnergyData data) {
+        try {
+            long started = System.nanoTime();
+            byte[] bytes = writer.writeValueAsBytes(data);
+            metrics.serialized(ResponseFormat.JSON, System.nanoTime() - started);
+            String etag = etag(bytes);
+            return new Encoded(data.records, PriceFields.ALL, bytes, etag, compress ? gzip(bytes) : null, 0, this);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode energy data", e);
+        }
+    }
+
+    /**
+     * Writes {@code records} as the full body would be written, leaving out the fields not in
+     * {@code fields}.
+     */
+    private Encoded write(List<EnergyDataRecord> records, PriceFields fields, long version) {
+        long started = System.nanoTime();
+        byte[] bytes = ResponseFormat.JSON.encode(records, fields);
+        metrics.serialized(ResponseFormat.JSON, System.nanoTime() - started);
+        return new Encoded(records, fields, bytes, etag(bytes), compress ? gzip(bytes) : null, version, this);
+    }
+
+    static byte[] gzip(byte[] bytes) {
+        var out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (var gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String etag(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Pending {
+
+        final long version;
+        final CompletableFuture<Encoded> encoded = new CompletableFuture<>();
+
+        Pending(long version) {
+            this.version = version;
+        }
+    }
+
+    public static final class Encoded {
+
+        // the records only, not the EnergyData keying them, or the weak map would never clear
+        final List<EnergyDataRecord> records;
+        final PriceFields fields;
+        final byte[] bytes;
+        final String etag;
+        final byte[] gzipped;
+        final long version;
+        private final EncodedResponses encoder;
+        private final Map<ResponseFormat, byte[]> variants = new EnumMap<>(ResponseFormat.class);
+        private final Map<PriceFields, Encoded> projections = new HashMap<>();
+
+        Encoded(List<EnergyDataRecord> records, PriceFields fields, byte[] bytes, String etag, byte[] gzipped, long version,
+                EncodedResponses encoder) {
+            this.records = records;
+            this.fields = fields;
+            this.bytes = bytes;
+            this.etag = etag;
+            this.gzipped = gzipped;
+            this.version = version;
+            this.encoder = encoder;
+        }
+
+        Encoded withVersion(long version) {
+            return new Encoded(records, fields, bytes, etag, gzipped, version, encoder);
+        }
+
+        /**
+         * This body restricted to {@code fields}, encoded on first use and kept for later requests.
+         */
+        public synchronized Encoded project(PriceFields fields) {
+            if (fields.equals(this.fields)) {
+                return this;
+            }
+            return projections.computeIfAbsent(fields, projection ->
+                    encoder.write(records == null ? List.of() : records, projection, version));
+        }
+
+        /**
+         * The body in {@code format}, encoded on first use and kept for later requests.
+         */
+        public synchronized byte[] bytes(ResponseFormat format) {
+            if (format == ResponseFormat.JSON) {
+                return bytes;
+            }
+            return variants.computeIfAbsent(format, variant -> {
+                long started = System.nanoTime();
+                byte[] encoded = variant.encode(records == null ? List.of() : records, fields);
+                encoder.metrics.serialized(variant, System.nanoTime() - started);
+                return encoded;
+            });
+        }
+
+        /**
+         * The strong validator of the body in {@code format}.
+         */
+        public String etag(ResponseFormat format) {
+            return format == ResponseFormat.JSON ? etag : variantEtag(format.name().toLowerCase());
+        }
+
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        public String etag() {
+            return etag;
+        }
+
+        /**
+         * @return the gzip compressed body, or null when compression is disabled
+         */
+        public byte[] gzipped() {
+            return gzipped;
+        }
+
+        /**
+         * The strong validator of the gzip variant, which differs from the plain one byte-wise.
+         */
+        public String gzippedEtag() {
+            return variantEtag("gzip");
+        }
+
+        private String variantEtag(String variant) {
+            return etag.substring(0, etag.length() - 1) + "-" + variant + "\"";
+        }
+    }
+}
@@ -1,23 +1,277 @@
 package com.maersk.wiremock;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyExtractors;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
 @Service
 public class EnergyApi {
 
+    private static final Logger log = LoggerFactory.getLogger(EnergyApi.class);
+
     private final WebClient webClient;
+    private final EnergyDataCache cache;
+    private final PriceStore store;
+    private final UpstreamScheduler scheduler;
+    private final UpstreamHedging hedging;
+    private final EnergyMetrics metrics;
+    private final PublicationSchedule publications;
+    private final EnergyDataDecoder decoder = new EnergyDataDecoder();
+    private final SingleFlight<String, EnergyData> inFlight = new SingleFlight<>();
+    private final boolean coalescing;
+    private final boolean staleWhileRevalidate;
+    private final Duration maxStale;
+    private final Duration timeout;
 
-    public EnergyApi(@Value("${energy.base-url}") String url) {
-        this.webClient = WebClient.builder().baseUrl(url).build();
+    public EnergyApi(@Value("${energy.base-url}") String url,
+                     @Value("${energy.coalescing.enabled:true}") boolean coalescing,
+                     @Value("${energy.cache.stale-while-revalidate:true}") boolean staleWhileRevalidate,
+                     @Value("${energy.cache.max-stale:PT1H}") Duration maxStale,
+                     @Value("${energy.upstream.timeout:PT10S}") Duration timeout,
+                     EnergyDataCache cache,
+                     PriceStore store,
+                     UpstreamScheduler scheduler,
+                     UpstreamHedging hedging,
+                     EnergyMetrics metrics,
+                     PublicationSchedule publications,
+                     UpstreamTransport transport) {
+        this.webClient = WebClient.builder()
+                .baseUrl(url)
+                .clientConnector(new ReactorClientHttpConnector(transport.httpClient(url)))
+                .build();
+        this.coalescing = coalescing;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.maxStale = maxStale;
+        this.timeout = timeout;
+        this.cache = cache;
+        this.store = store;
+        this.scheduler = scheduler;
+        this.hedging = hedging;
+        this.metrics = metrics;
+        this.publications = publications;
     }
 
+    /**
+     * The latest prices. Once the cached copy passes its upstream freshness lifetime it keeps
+     * being served, up to {@code energy.cache.max-stale}, while a refresh runs in the background
+     * or when upstream fails; beyond that the caller waits for upstream and sees its errors.
+     * The wait is bounded by the {@link Deadline} in the subscriber context, or the upstream
+     * timeout when there is none.
+     */
     public Mono<EnergyData> fecthEnergyData() {
-        return webClient.get().uri("/dataset/Elspotprices")
-                .retrieve()
-                .bodyToMono(EnergyData.class)
-                .onErrorContinue((t, o) -> new EnergyData());
+        return cached(EnergyQuery.latest());
+    }
+
+    /**
+     * The rows selected by {@code query}, cached and bounded like the latest prices.
+     */
+    public Mono<EnergyData> fecthEnergyData(EnergyQuery query) {
+        return cached(query);
+    }
+
+    /**
+     * Walks the whole dataset page by page. Records are emitted while a page is still being
+     * parsed and the next page is only requested once the previous one has been drained
+     * downstream, so memory stays bounded by a single page regardless of the dataset size.
+     * A client is reading along, so pages are not shed when quota runs low, but they queue
+     * behind single foreground calls.
+     */
+    public Flux<EnergyDataRecord> streamEnergyData(int pageSize) {
+        return stream(EnergyQuery.page(0, pageSize), UpstreamPriority.EXPORT);
+    }
+
+    /**
+     * Streams every row matched by {@code first}, following its pages until a short one.
+     */
+    public Flux<EnergyDataRecord> stream(EnergyQuery first, UpstreamPriority priority) {
+        return Flux.defer(() -> {
+            var cursor = new PageCursor(first);
+            return Flux.defer(() -> exchangeToFlux(cursor.query, priority, decoder::decode).doOnNext(record -> cursor.received++))
+                    .repeat(cursor::advance);
+        });
+    }
+
+    /**
+     * Like {@link #stream}, but decodes straight into {@link PriceColumns} batches for bulk loads
+     * that do not need the records themselves.
+     */
+    public Flux<PriceColumns> streamColumns(EnergyQuery first, UpstreamPriority priority) {
+        return Flux.defer(() -> {
+            var cursor = new PageCursor(first);
+            return Flux.defer(() -> exchangeToFlux(cursor.query, priority,
+                            body -> decoder.decodeToColumns(body, records -> cursor.received += records)))
+                    .repeat(cursor::advance);
+        });
+    }
+
+    private Mono<EnergyData> cached(EnergyQuery query) {
+        return Mono.deferContextual(context -> {
+            String key = query.toUri();
+            EnergyData cached = cache.get(key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            EnergyData stale = staleWhileRevalidate ? cache.getStale(key, maxStale) : null;
+            if (stale != null) {
+                load(query, key).timeout(timeout).subscribe(null, e -> {
+                    // failed upstream calls are counted where they fail, a timeout only here
+                    if (e instanceof TimeoutException) {
+                        metrics.error(e);
+                    }
+                    log.warn("Background refresh of {} failed, serving stale data", key, e);
+                });
+                return Mono.just(stale);
+            }
+            return load(query, key).timeout(Deadline.remaining(context, timeout)).onErrorResume(e -> {
+                if (e instanceof TimeoutException) {
+                    metrics.error(e);
+                }
+                EnergyData fallback = cache.getStale(key, maxStale);
+                if (fallback == null) {
+                    return Mono.error(e);
+                }
+                log.warn("Fetching {} failed, serving stale data", key, e);
+                return Mono.just(fallback);
+            });
+        });
+    }
+
+    private Mono<EnergyData> load(EnergyQuery query, String key) {
+        return coalescing ? inFlight.execute(key, () -> fetch(query, key)) : fetch(query, key);
+    }
+
+    private <T> Flux<T> exchangeToFlux(EnergyQuery query, UpstreamPriority priority, Function<Flux<DataBuffer>, Flux<T>> decode) {
+        return scheduler.acquire(priority).thenMany(Flux.defer(() -> {
+            long started = System.nanoTime();
+            return webClient.get().uri(query::toUri)
+                    .exchangeToFlux(response -> {
+                        metrics.firstByte(System.nanoTime() - started);
+                        scheduler.observe(response.headers().asHttpHeaders());
+                        publications.observe(response.headers().asHttpHeaders());
+                        if (response.statusCode().isError()) {
+                            return response.createException().flatMapMany(Flux::error);
+                        }
+                        return decode.apply(response.body(BodyExtractors.toDataBuffers()));
+                    })
+                    .timeout(timeout)
+                    .doOnComplete(() -> metrics.upstream(System.nanoTime() - started, true))
+                    .doOnError(e -> metrics.upstream(System.nanoTime() - started, false));
+        })).doOnError(metrics::error);
+    }
+
+    /**
+     * Fetches {@code query}, revalidating a previously cached response when it has validators:
+     * a {@code 304 Not Modified} answer reuses the decoded data without reading a body.
+     */
+    private Mono<EnergyData> fetch(EnergyQuery query, String key) {
+        // errors are counted over the whole call, so quota rejections are too
+        var first = scheduler.acquire(UpstreamPriority.FOREGROUND).then(attempt(query, key)).doOnError(metrics::error);
+        if (!hedging.isEnabled()) {
+            return first;
+        }
+        return Mono.firstWithSignal(first, hedge(query, key));
+    }
+
+    /**
+     * A second attempt started once the first one is slower than usual. It only goes out if the
+     * quota has a token to spare, and never completes otherwise, so it can win the race but not
+     * fail it.
+     */
+    private Mono<EnergyData> hedge(EnergyQuery query, String key) {
+        return Mono.delay(hedging.delay())
+                .filter(tick -> scheduler.tryAcquire(UpstreamPriority.FOREGROUND))
+                .flatMap(tick -> attempt(query, key))
+                .doOnError(metrics::error)
+                .onErrorResume(e -> Mono.never())
+                .switchIfEmpty(Mono.never());
+    }
+
+    private Mono<EnergyData> attempt(EnergyQuery query, String key) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return exchange(query, key, cache.validators(key))
+                    .doOnNext(data -> hedging.record(Duration.ofNanos(System.nanoTime() - started)));
+        });
+    }
+
+    private Mono<EnergyData> exchange(EnergyQuery query, String key, EnergyDataCache.Validators validators) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return exchange(query, key, validators, started)
+                    .doOnSuccess(data -> metrics.upstream(System.nanoTime() - started, true))
+                    .doOnError(e -> metrics.upstream(System.nanoTime() - started, false));
+        });
+    }
+
+    private Mono<EnergyData> exchange(EnergyQuery query, String key, EnergyDataCache.Validators validators, long started) {
+        return webClient.get().uri(query::toUri)
+                .headers(headers -> {
+                    if (validators != null) {
+                        validators.applyTo(headers);
+                    }
+                })
+                .exchangeToMono(response -> {
+                    long headersAt = System.nanoTime();
+                    metrics.firstByte(headersAt - started);
+                    var headers = response.headers().asHttpHeaders();
+                    scheduler.observe(headers);
+                    publications.observe(headers);
+                    if (response.statusCode().isError()) {
+                        return response.createException().flatMap(Mono::error);
+                    }
+                    var ttl = EnergyDataCache.ttlOf(headers);
+                    if (response.statusCode() == HttpStatus.NOT_MODIFIED) {
+                        // evicted while the request was out: fall back to an unconditional GET, which costs quota too
+                        return response.releaseBody()
+                                .then(Mono.fromSupplier(() -> cache.revalidated(key, ttl, EnergyDataCache.Validators.of(headers))))
+                                .switchIfEmpty(scheduler.acquire(UpstreamPriority.FOREGROUND)
+                                        .then(Mono.defer(() -> exchange(query, key, null, System.nanoTime()))));
+                    }
+                    long[] bytes = new long[1];
+                    var body = response.body(BodyExtractors.toDataBuffers())
+                            .doOnNext(buffer -> bytes[0] += buffer.readableByteCount());
+                    return decoder.decodeToEnergyData(body, query.fields())
+                            .doOnNext(data -> {
+                                metrics.decoded(System.nanoTime() - headersAt, bytes[0]);
+                                cache.put(key, data, ttl, EnergyDataCache.Validators.of(headers));
+                                // a projection lacks prices that would overwrite the held ones, and a
+                                // result cut short by its limit would leave gaps in what is held
+                                if (query.fields().isAll() && !query.isCutShort(data.records.size())) {
+                                    store.ingest(data.records);
+                                }
+                            });
+                });
+    }
+
+    private static final class PageCursor {
+
+        EnergyQuery query;
+        int received;
+
+        PageCursor(EnergyQuery query) {
+            this.query = query;
+        }
+
+        boolean advance() {
+            // a query without a page size gets everything at once, and its offset would never move
+            if (query.limit() <= 0 || received < query.limit()) {
+                return false;
+            }
+            query = query.nextPage();
+            received = 0;
+            return true;
+        }
     }
 }
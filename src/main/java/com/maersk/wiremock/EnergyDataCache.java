@@ -0,0 +1,229 @@
+package com.maersk.wiremock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, least-recently-used cache of decoded upstream responses. Entries are fresh for the
+ * lifetime announced by the upstream {@code Cache-Control}/{@code Expires} headers; expired
+ * entries stay around until evicted so they can be served stale when upstream is unavailable,
+ * or revalidated with a conditional request when they carry {@link Validators}.
+ */
+@Component
+public class EnergyDataCache {
+
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+
+    public EnergyDataCache(@Value("${energy.cache.max-entries:64}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > EnergyDataCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public EnergyData get(String key) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt - now > 0) {
+                hits.incrementAndGet();
+                return entry.data;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * The last cached value for {@code key} if it expired no longer than {@code maxStale} ago.
+     */
+    public EnergyData getStale(String key, Duration maxStale) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            return entry != null && entry.expiresAt + maxStale.toNanos() - now > 0 ? entry.data : null;
+        }
+    }
+
+    /**
+     * Validators of the last cached value for {@code key}, or null if it cannot be revalidated.
+     */
+    public Validators validators(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            return entry != null ? entry.validators : null;
+        }
+    }
+
+    public void put(String key, EnergyData data, Duration ttl) {
+        put(key, data, ttl, null);
+    }
+
+    /**
+     * Stores {@code data} for {@code ttl}. Responses without a freshness lifetime are still kept,
+     * already expired, when they carry validators.
+     */
+    public void put(String key, EnergyData data, Duration ttl, Validators validators) {
+        if ((ttl.isZero() || ttl.isNegative()) && validators == null) {
+            return;
+        }
+        Entry entry = new Entry(data, System.nanoTime() + Math.max(ttl.toNanos(), 0), validators);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Marks the cached value for {@code key} fresh again after upstream answered
+     * {@code 304 Not Modified}, keeping the decoded data.
+     *
+     * @return the cached data, or null if it was evicted in the meantime
+     */
+    public EnergyData revalidated(String key, Duration ttl, Validators validators) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            revalidations.incrementAndGet();
+            entries.put(key, new Entry(entry.data, System.nanoTime() + Math.max(ttl.toNanos(), 0),
+                    validators != null ? validators : entry.validators));
+            return entry.data;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public long revalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * Freshness lifetime of a response: {@code max-age} wins over {@code Expires}, and
+     * {@code no-store}, {@code no-cache} or {@code private} make the response uncacheable
+     * wherever they appear among the directives.
+     */
+    static Duration ttlOf(HttpHeaders headers) {
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null) {
+            Duration maxAge = null;
+            for (String directive : cacheControl.split(",")) {
+                String value = directive.trim().toLowerCase();
+                if (value.equals("no-store") || value.equals("no-cache") || value.equals("private")) {
+                    return Duration.ZERO;
+                }
+                if (value.startsWith("max-age=") && maxAge == null) {
+                    try {
+                        maxAge = Duration.ofSeconds(Long.parseLong(value.substring("max-age=".length())));
+                    } catch (NumberFormatException e) {
+                        maxAge = Duration.ZERO;
+                    }
+                }
+            }
+            if (maxAge != null) {
+                return maxAge;
+            }
+        }
+        try {
+            long expires = headers.getExpires();
+            if (expires < 0) {
+                return Duration.ZERO;
+            }
+            long date = headers.getDate();
+            return Duration.ofMillis(expires - (date < 0 ? System.currentTimeMillis() : date));
+        } catch (IllegalArgumentException e) {
+            return Duration.ZERO;
+        }
+    }
+
+    private static final class Entry {
+
+        final EnergyData data;
+        final long expiresAt;
+        final Validators validators;
+
+        Entry(EnergyData data, long expiresAt, Validators validators) {
+            this.data = data;
+            this.expiresAt = expiresAt;
+            this.validators = validators;
+        }
+    }
+
+    /**
+     * The {@code Last-Modified} and {@code ETag} of a cached response, echoed back upstream as
+     * {@code If-Modified-Since} and {@code If-None-Match}.
+     */
+    public static final class Validators {
+
+        final String lastModified;
+        final String etag;
+
+        Validators(String lastModified, String etag) {
+            this.lastModified = lastModified;
+            this.etag = etag;
+        }
+
+        /**
+         * @return the validators of a response, or null if it has none or must not be stored
+         */
+        static Validators of(HttpHeaders headers) {
+            String cacheControl = headers.getCacheControl();
+            if (cacheControl != null && cacheControl.toLowerCase().contains("no-store")) {
+                return null;
+            }
+            String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+            String etag = headers.getETag();
+            return lastModified == null && etag == null ? null : new Validators(lastModified, etag);
+        }
+
+        void applyTo(HttpHeaders headers) {
+            if (lastModified != null) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+            if (etag != null) {
+                headers.setIfNoneMatch(etag);
+            }
+        }
+    }
+}
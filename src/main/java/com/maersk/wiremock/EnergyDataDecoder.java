@@ -0,0 +1,324 @@
+package com.maersk.wiremock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Decodes an Elspotprices response body token by token with Jackson's non-blocking parser,
+ * emitting each element of the {@code records} array as soon as its closing brace arrives
+ * instead of buffering the whole document first. Fields left out of the requested
+ * {@link PriceFields} are skipped without reading their text. {@link #decodeToColumns} skips the
+ * records altogether and reads hours, areas and prices from the parser's buffer into primitive
+ * columns.
+ */
+public class EnergyDataDecoder {
+
+    private static final int RECORDS = 2;
+    private static final int RECORD = 3;
+
+    private final JsonFactory jsonFactory;
+
+    public EnergyDataDecoder() {
+        this(new JsonFactory());
+    }
+
+    public EnergyDataDecoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    public Flux<EnergyDataRecord> decode(Flux<DataBuffer> body) {
+        return decode(body, PriceFields.ALL);
+    }
+
+    public Flux<EnergyDataRecord> decode(Flux<DataBuffer> body, PriceFields fields) {
+        return Flux.defer(() -> {
+            var tokenizer = new RecordTokenizer(newParser(), fields);
+            return body.concatMapIterable(tokenizer::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(tokenizer.endOfInput())))
+                    .doFinally(signal -> tokenizer.close());
+        });
+    }
+
+    public Flux<PriceColumns> decodeToColumns(Flux<DataBuffer> body) {
+        return decodeToColumns(body, records -> {
+        });
+    }
+
+    /**
+     * Decodes the rows of each received buffer into a {@link PriceColumns} batch. Records without
+     * a price area or HourUTC are skipped, but still reported to {@code recordsSeen} so callers
+     * can tell a short page from a filtered one.
+     */
+    public Flux<PriceColumns> decodeToColumns(Flux<DataBuffer> body, IntConsumer recordsSeen) {
+        return Flux.defer(() -> {
+            var tokenizer = new ColumnTokenizer(newParser(), recordsSeen);
+            return body.concatMapIterable(tokenizer::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(tokenizer.endOfInput())))
+                    .doFinally(signal -> tokenizer.close());
+        });
+    }
+
+    public Mono<EnergyData> decodeToEnergyData(Flux<DataBuffer> body) {
+        return decodeToEnergyData(body, PriceFields.ALL);
+    }
+
+    public Mono<EnergyData> decodeToEnergyData(Flux<DataBuffer> body, PriceFields fields) {
+        return decode(body, fields).collectList().map(records -> {
+            var data = new EnergyData();
+            data.records = records;
+            return data;
+        });
+    }
+
+    private JsonParser newParser() {
+        try {
+            return jsonFactory.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Walks the tokens of the document, handing each scalar inside an element of the
+     * {@code records} array to the subclass.
+     */
+    private abstract static class Tokenizer<T> {
+
+        final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+
+        private int depth;
+        private boolean inRecords;
+        private boolean inRecord;
+        private String field;
+
+        Tokenizer(JsonParser parser) {
+            this.parser = parser;
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        List<T> feed(DataBuffer buffer) {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            DataBufferUtils.release(buffer);
+            try {
+                feeder.feedInput(bytes, 0, bytes.length);
+                return parse();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        List<T> endOfInput() {
+            feeder.endOfInput();
+            try {
+                return parse();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            try {
+                parser.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        abstract void startRecord();
+
+        abstract void value(String field, JsonToken token) throws IOException;
+
+        abstract void endRecord();
+
+        /**
+         * @return what was decoded since the last call
+         */
+        abstract List<T> drain();
+
+        private List<T> parse() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        depth++;
+                        if (inRecords && depth == RECORD && token == JsonToken.START_OBJECT) {
+                            inRecord = true;
+                            startRecord();
+                        } else if (depth == RECORDS && "records".equals(field) && token == JsonToken.START_ARRAY) {
+                            inRecords = true;
+                        }
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        if (inRecord && depth == RECORD) {
+                            inRecord = false;
+                            endRecord();
+                        } else if (inRecords && depth == RECORDS) {
+                            inRecords = false;
+                        }
+                        depth--;
+                        break;
+                    case FIELD_NAME:
+                        field = parser.getCurrentName();
+                        break;
+                    default:
+                        if (inRecord && depth == RECORD) {
+                            value(field, token);
+                        }
+                }
+            }
+            return drain();
+        }
+    }
+
+    private static final class RecordTokenizer extends Tokenizer<EnergyDataRecord> {
+
+        private final PriceFields fields;
+        private List<EnergyDataRecord> records = List.of();
+        private EnergyDataRecord record;
+
+        RecordTokenizer(JsonParser parser, PriceFields fields) {
+            super(parser);
+            this.fields = fields;
+        }
+
+        @Override
+        void startRecord() {
+            record = new EnergyDataRecord();
+        }
+
+        @Override
+        void value(String field, JsonToken token) throws IOException {
+            int mapped = PriceFields.field(field);
+            if (!fields.includes(mapped)) {
+                return;
+            }
+            String value = token == JsonToken.VALUE_NULL ? null : parser.getText();
+            switch (mapped) {
+                case PriceFields.HOUR_UTC:
+                    record.HourUTC = value;
+                    break;
+                case PriceFields.HOUR_DK:
+                    record.HourDK = value;
+                    break;
+                case PriceFields.PRICE_AREA:
+                    record.PriceArea = value;
+                    break;
+                case PriceFields.SPOT_PRICE_DKK:
+                    record.SpotPriceDKK = value;
+                    break;
+                case PriceFields.SPOT_PRICE_EUR:
+                    record.SpotPriceEUR = value;
+                    break;
+                default:
+            }
+        }
+
+        @Override
+        void endRecord() {
+            if (records.isEmpty()) {
+                records = new ArrayList<>();
+            }
+            records.add(record);
+            record = null;
+        }
+
+        @Override
+        List<EnergyDataRecord> drain() {
+            var drained = records;
+            records = List.of();
+            return drained;
+        }
+    }
+
+    private static final class ColumnTokenizer extends Tokenizer<PriceColumns> {
+
+        private final IntConsumer recordsSeen;
+        private PriceColumns batch;
+        private int records;
+        private int hour;
+        private byte area;
+        private long spotPriceDkk;
+        private long spotPriceEur;
+        private boolean hasHour;
+
+        ColumnTokenizer(JsonParser parser, IntConsumer recordsSeen) {
+            super(parser);
+            this.recordsSeen = recordsSeen;
+        }
+
+        @Override
+        void startRecord() {
+            hasHour = false;
+            area = PriceAreas.UNKNOWN;
+            spotPriceDkk = PriceColumns.NO_PRICE;
+            spotPriceEur = PriceColumns.NO_PRICE;
+        }
+
+        @Override
+        void value(String field, JsonToken token) throws IOException {
+            if (token == JsonToken.VALUE_NULL) {
+                return;
+            }
+            char[] chars = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            switch (field) {
+                case "HourUTC":
+                    hour = PriceColumns.epochHour(chars, offset, length);
+                    hasHour = true;
+                    break;
+                case "PriceArea":
+                    area = PriceAreas.code(chars, offset, length);
+                    break;
+                case "SpotPriceDKK":
+                    spotPriceDkk = FixedPoint.parse(chars, offset, length);
+                    break;
+                case "SpotPriceEUR":
+                    spotPriceEur = FixedPoint.parse(chars, offset, length);
+                    break;
+                default:
+            }
+        }
+
+        @Override
+        void endRecord() {
+            records++;
+            if (!hasHour || area == PriceAreas.UNKNOWN) {
+                return;
+            }
+            if (batch == null) {
+                batch = new PriceColumns(256);
+            }
+            batch.append(hour, area, spotPriceDkk, spotPriceEur);
+        }
+
+        @Override
+        List<PriceColumns> drain() {
+            if (records > 0) {
+                recordsSeen.accept(records);
+                records = 0;
+            }
+            if (batch == null) {
+                return List.of();
+            }
+            var drained = List.of(batch);
+            batch = null;
+            return drained;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.maersk.wiremock;
 
 public class EnergyDataRecord {
 
+    public String HourUTC;
     public String HourDK;
     public String PriceArea;
     public String SpotPriceDKK;
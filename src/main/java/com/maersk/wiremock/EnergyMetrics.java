@@ -0,0 +1,115 @@
+package com.maersk.wiremock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Meters along the {@code /data} path, from the upstream call through decoding to the encoded
+ * response. Every meter on the hot path is registered up front so recording a sample is a
+ * field read and a histogram update. Connect times and pool gauges come from reactor-netty's
+ * own {@code reactor.netty.*} meters.
+ */
+@Component
+public class EnergyMetrics {
+
+    private final MeterRegistry registry;
+    private final Timer firstByte;
+    private final Timer upstreamSuccess;
+    private final Timer upstreamFailure;
+    private final Timer decode;
+    private final DistributionSummary upstreamPayload;
+    private final Map<ResponseFormat, Timer> serialization = new EnumMap<>(ResponseFormat.class);
+    private final Map<ResponseFormat, DistributionSummary> responsePayload = new EnumMap<>(ResponseFormat.class);
+    private final Map<String, Counter> errors = new ConcurrentHashMap<>();
+
+    public EnergyMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.firstByte = Timer.builder("energy.upstream.first-byte")
+                .description("Time from sending an upstream request until its response headers arrive")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.upstreamSuccess = upstreamTimer("success");
+        this.upstreamFailure = upstreamTimer("error");
+        this.decode = Timer.builder("energy.upstream.decode")
+                .description("Time from the upstream response headers until the body is decoded")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.upstreamPayload = DistributionSummary.builder("energy.upstream.payload")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        for (ResponseFormat format : ResponseFormat.values()) {
+            String tag = format.name().toLowerCase();
+            serialization.put(format, Timer.builder("energy.response.serialization")
+                    .tag("format", tag)
+                    .publishPercentileHistogram()
+                    .register(registry));
+            responsePayload.put(format, DistributionSummary.builder("energy.response.payload")
+                    .tag("format", tag)
+                    .baseUnit("bytes")
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+
+    public void firstByte(long nanos) {
+        firstByte.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void upstream(long nanos, boolean success) {
+        (success ? upstreamSuccess : upstreamFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void decoded(long nanos, long bytes) {
+        decode.record(nanos, TimeUnit.NANOSECONDS);
+        upstreamPayload.record(bytes);
+    }
+
+    public void serialized(ResponseFormat format, long nanos) {
+        serialization.get(format).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void responded(ResponseFormat format, long bytes) {
+        responsePayload.get(format).record(bytes);
+    }
+
+    /**
+     * Counts a failed upstream call under {@code energy.upstream.errors}, tagged with its cause.
+     */
+    public void error(Throwable error) {
+        errors.computeIfAbsent(cause(error), cause -> Counter.builder("energy.upstream.errors")
+                .tag("cause", cause)
+                .register(registry)).increment();
+    }
+
+    static String cause(Throwable error) {
+        if (error instanceof WebClientResponseException) {
+            return "http_" + ((WebClientResponseException) error).getRawStatusCode();
+        }
+        if (error instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (error instanceof QuotaExceededException) {
+            return "quota";
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    private Timer upstreamTimer(String outcome) {
+        return Timer.builder("energy.upstream")
+                .description("Total time of an upstream call, including reading and decoding its body")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
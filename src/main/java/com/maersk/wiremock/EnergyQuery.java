@@ -0,0 +1,164 @@
+package com.maersk.wiremock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.web.util.UriBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parameters of a request against the upstream Elspotprices dataset.
+ */
+public class EnergyQuery {
+
+    static final String DATASET_PATH = "/dataset/Elspotprices";
+
+    private static final ObjectWriter FILTER_WRITER = new ObjectMapper().writer();
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    private final int offset;
+    private final int limit;
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private final String sort;
+    private final List<String> areas;
+    // null to leave the columns to upstream
+    private final PriceFields columns;
+
+    private EnergyQuery(int offset, int limit, LocalDateTime start, LocalDateTime end, String sort, List<String> areas,
+                        PriceFields columns) {
+        this.offset = offset;
+        this.limit = limit;
+        this.start = start;
+        this.end = end;
+        this.sort = sort;
+        this.areas = areas;
+        this.columns = columns;
+    }
+
+    public static EnergyQuery latest() {
+        return new EnergyQuery(0, 0, null, null, null, List.of(), null);
+    }
+
+    public static EnergyQuery page(int offset, int limit) {
+        return new EnergyQuery(offset, limit, null, null, null, List.of(), null);
+    }
+
+    /**
+     * Rows with HourUTC at or after {@code start}, oldest first.
+     */
+    public static EnergyQuery since(LocalDateTime start, int limit) {
+        return new EnergyQuery(0, limit, start, null, "HourUTC asc", List.of(), PriceFields.ALL);
+    }
+
+    /**
+     * Rows with HourUTC in {@code [start, end)}, oldest first.
+     */
+    public static EnergyQuery between(LocalDateTime start, LocalDateTime end, int limit) {
+        return new EnergyQuery(0, limit, start, end, "HourUTC asc", List.of(), PriceFields.ALL);
+    }
+
+    /**
+     * The rows and fields a {@code /data} request selects, filtered, sorted and limited upstream.
+     * Without a limit one row more than {@code maxRows} is requested, so a caller can tell a
+     * result that would be too large from one that fits.
+     */
+    public static EnergyQuery of(PriceQuery query, int maxRows) {
+        return new EnergyQuery(0, query.limit > 0 ? query.limit : maxRows + 1, query.from, query.to,
+                "HourUTC " + (query.sort != null ? query.sort : "asc"), query.areas, query.fields);
+    }
+
+    public EnergyQuery nextPage() {
+        return new EnergyQuery(offset + limit, limit, start, end, sort, areas, columns);
+    }
+
+    public EnergyQuery withAreas(List<String> areas) {
+        return new EnergyQuery(offset, limit, start, end, sort, List.copyOf(areas), columns);
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Whether {@code rows} returned for this query may have been cut short by its limit, so
+     * upstream can hold more rows in the range than were returned.
+     */
+    public boolean isCutShort(int rows) {
+        return limit > 0 && rows >= limit;
+    }
+
+    /**
+     * The fields to decode from the response.
+     */
+    public PriceFields fields() {
+        return columns != null ? columns : PriceFields.ALL;
+    }
+
+    public String toUri() {
+        var builder = UriComponentsBuilder.fromPath(DATASET_PATH);
+        params().forEach(builder::queryParam);
+        return builder.build().toUriString();
+    }
+
+    /**
+     * Expands the query against {@code builder}, encoding parameter values such as the JSON
+     * {@code filter} strictly.
+     */
+    public URI toUri(UriBuilder builder) {
+        var params = params();
+        builder.path(DATASET_PATH);
+        params.keySet().forEach(name -> builder.queryParam(name, "{" + name + "}"));
+        return builder.build(params);
+    }
+
+    private Map<String, String> params() {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (offset > 0) {
+            params.put("offset", String.valueOf(offset));
+        }
+        if (limit > 0) {
+            params.put("limit", String.valueOf(limit));
+        }
+        if (start != null) {
+            params.put("start", TIME_FORMAT.format(start));
+        }
+        if (end != null) {
+            params.put("end", TIME_FORMAT.format(end));
+        }
+        if (!areas.isEmpty()) {
+            params.put("filter", filter());
+        }
+        if (columns != null) {
+            params.put("columns", columns.toString());
+        }
+        if (sort != null) {
+            params.put("sort", sort);
+        }
+        return params;
+    }
+
+    private String filter() {
+        try {
+            return FILTER_WRITER.writeValueAsString(Map.of("PriceArea", areas));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode area filter", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toUri();
+    }
+}
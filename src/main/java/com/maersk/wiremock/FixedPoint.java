@@ -0,0 +1,187 @@
+package com.maersk.wiremock;
+
+/**
+ * Parses and formats decimal prices as {@code long} micro-units (six fractional digits, the
+ * precision upstream publishes) straight from and into character or byte buffers, without
+ * going through {@code String}, {@code BigDecimal} or {@code double}. Digits beyond the sixth
+ * fractional one are truncated, like {@code BigDecimal.longValue()} would.
+ */
+public final class FixedPoint {
+
+    public static final int SCALE = 6;
+    public static final long ONE = 1_000_000;
+
+    /**
+     * Longest output of {@link #write}: sign, 13 integer digits, point and six fractional ones.
+     */
+    public static final int MAX_LENGTH = 21;
+
+    private static final long[] POWERS = new long[19];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    public static long parse(CharSequence text) {
+        var parser = new Accumulator();
+        for (int i = 0; i < text.length(); i++) {
+            parser.accept(text.charAt(i));
+        }
+        return parser.result(text);
+    }
+
+    public static long parse(char[] chars, int offset, int length) {
+        var parser = new Accumulator();
+        for (int i = offset; i < offset + length; i++) {
+            parser.accept(chars[i]);
+        }
+        return parser.result(null);
+    }
+
+    public static long parse(byte[] bytes, int offset, int length) {
+        var parser = new Accumulator();
+        for (int i = offset; i < offset + length; i++) {
+            parser.accept((char) bytes[i]);
+        }
+        return parser.result(null);
+    }
+
+    /**
+     * Writes {@code micros} as a plain decimal with six fractional digits.
+     *
+     * @return the number of bytes written, at most {@link #MAX_LENGTH}
+     */
+    public static int write(long micros, byte[] out, int offset) {
+        int length = length(micros);
+        int position = offset + length;
+        long remaining = Math.abs(micros);
+        for (int i = 0; i < SCALE; i++) {
+            out[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        out[--position] = '.';
+        do {
+            out[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (micros < 0) {
+            out[--position] = '-';
+        }
+        return length;
+    }
+
+    /**
+     * Writes {@code micros} as a plain decimal with six fractional digits.
+     *
+     * @return the number of chars written, at most {@link #MAX_LENGTH}
+     */
+    public static int write(long micros, char[] out, int offset) {
+        int length = length(micros);
+        int position = offset + length;
+        long remaining = Math.abs(micros);
+        for (int i = 0; i < SCALE; i++) {
+            out[--position] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        out[--position] = '.';
+        do {
+            out[--position] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (micros < 0) {
+            out[--position] = '-';
+        }
+        return length;
+    }
+
+    public static String toString(long micros) {
+        char[] chars = new char[MAX_LENGTH];
+        return new String(chars, 0, write(micros, chars, 0));
+    }
+
+    private static int length(long micros) {
+        if (micros == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("Cannot format " + micros);
+        }
+        long integer = Math.abs(micros) / ONE;
+        int digits = 1;
+        while (digits < POWERS.length && integer >= POWERS[digits]) {
+            digits++;
+        }
+        return (micros < 0 ? 1 : 0) + digits + 1 + SCALE;
+    }
+
+    /**
+     * State of a parse in progress: {@code [-+]digits[.digits][(e|E)[-+]digits]}.
+     */
+    private static final class Accumulator {
+
+        private static final int INTEGER = 0;
+        private static final int FRACTION = 1;
+        private static final int EXPONENT = 2;
+
+        long mantissa;
+        int fractionDigits;
+        int exponent;
+        boolean negative;
+        boolean negativeExponent;
+        boolean digits;
+        int part = INTEGER;
+        int position;
+        boolean invalid;
+
+        void accept(char c) {
+            int index = position++;
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (part == EXPONENT) {
+                    exponent = Math.min(exponent * 10 + (c - '0'), 1000);
+                } else if (mantissa <= (Long.MAX_VALUE - 9) / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (part == FRACTION) {
+                        fractionDigits++;
+                    }
+                } else if (part == INTEGER) {
+                    invalid = true;
+                }
+                // fraction digits that no longer fit in a long are below the scale anyway
+            } else if (c == '.' && part == INTEGER) {
+                part = FRACTION;
+            } else if ((c == 'e' || c == 'E') && part != EXPONENT && digits) {
+                part = EXPONENT;
+                digits = false;
+            } else if ((c == '-' || c == '+') && (index == 0 || part == EXPONENT && !digits)) {
+                if (part == EXPONENT) {
+                    negativeExponent = c == '-';
+                } else {
+                    negative = c == '-';
+                }
+            } else {
+                invalid = true;
+            }
+        }
+
+        long result(CharSequence text) {
+            if (invalid || !digits) {
+                throw new NumberFormatException("Not a decimal number: " + (text != null ? text : "(" + position + " chars)"));
+            }
+            int shift = SCALE - fractionDigits + (negativeExponent ? -exponent : exponent);
+            long value;
+            if (shift >= 0) {
+                if (shift >= POWERS.length || mantissa > Long.MAX_VALUE / POWERS[shift]) {
+                    throw new NumberFormatException("Decimal number out of range: " + (text != null ? text : ""));
+                }
+                value = mantissa * POWERS[shift];
+            } else {
+                value = -shift >= POWERS.length ? 0 : mantissa / POWERS[-shift];
+            }
+            return negative ? -value : value;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.maersk.wiremock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes price rows to live subscribers as they are ingested, so clients waiting for new hours
+ * need not poll {@code /data}. Rows arrive through the {@link PriceStore} from the one shared
+ * {@link PriceSync} poller and are serialized once per area, then fanned out through a
+ * multicast sink, both on a thread of their own rather than under the store's lock. Each
+ * subscriber has its own bounded buffer that drops the oldest updates when it falls behind, so
+ * a slow client never holds up the others.
+ */
+@Component
+public class LivePrices implements PriceStore.Listener, DisposableBean {
+
+    static final String EVENT = "prices";
+
+    private final ObjectWriter writer;
+    private final PriceStore store;
+    private final int bufferSize;
+    private final Duration heartbeat;
+    private final Sinks.Many<Update> sink = Sinks.many().multicast().directBestEffort();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter dropped;
+    // one thread, so updates are published in the order they were ingested
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "live-prices");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LivePrices(ObjectMapper objectMapper,
+                      PriceStore store,
+                      @Value("${energy.live.buffer-size:256}") int bufferSize,
+                      @Value("${energy.live.heartbeat:PT15S}") Duration heartbeat,
+                      MeterRegistry registry) {
+        this.writer = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, EnergyDataRecord.class));
+        this.store = store;
+        this.bufferSize = bufferSize;
+        this.heartbeat = heartbeat;
+        this.dropped = Counter.builder("energy.live.dropped").register(registry);
+        Gauge.builder("energy.live.subscribers", subscribers, AtomicInteger::get).register(registry);
+        store.addListener(this);
+    }
+
+    /**
+     * Rows of the given areas, every area when empty, ingested from now on. Each event carries
+     * the JSON array of one area's rows from a single ingest; comments are sent in between to
+     * keep idle connections open.
+     */
+    public Flux<ServerSentEvent<String>> subscribe(byte[] areas) {
+        var updates = sink.asFlux()
+                .filter(update -> matches(areas, update.area))
+                .map(update -> ServerSentEvent.builder(update.json)
+                        .id(String.valueOf(update.version))
+                        .event(EVENT)
+                        .build());
+        var heartbeats = Flux.interval(heartbeat)
+                .map(tick -> ServerSentEvent.<String>builder().comment("").build())
+                .onBackpressureDrop();
+        // buffered after the merge, which would otherwise queue ahead of it and drop the newest instead
+        return Flux.merge(updates, heartbeats)
+                .onBackpressureBuffer(bufferSize, event -> dropped.increment(), BufferOverflowStrategy.DROP_OLDEST)
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    public int subscribers() {
+        return subscribers.get();
+    }
+
+    @Override
+    public void onIngest(PriceColumns changes) {
+        if (sink.currentSubscriberCount() == 0) {
+            return;
+        }
+        long version = store.version();
+        publisher.execute(() -> publish(changes, version));
+    }
+
+    private void publish(PriceColumns changes, long version) {
+        List<List<EnergyDataRecord>> byArea = new ArrayList<>();
+        changes.scanRows(0, changes.size(), (row, hour, area, spotPriceDkk, spotPriceEur) -> {
+            while (byArea.size() <= area) {
+                byArea.add(null);
+            }
+            if (byArea.get(area) == null) {
+                byArea.set(area, new ArrayList<>());
+            }
+            byArea.get(area).add(PriceColumns.toRecord(hour, area, spotPriceDkk, spotPriceEur));
+        });
+        for (int area = 0; area < byArea.size(); area++) {
+            if (byArea.get(area) != null) {
+                sink.tryEmitNext(new Update((byte) area, version, encode(byArea.get(area))));
+            }
+        }
+    }
+
+    /**
+     * Waits until every ingest so far has been published.
+     */
+    void flush() throws InterruptedException, ExecutionException {
+        publisher.submit(() -> {
+        }).get();
+    }
+
+    @Override
+    public void destroy() {
+        publisher.shutdownNow();
+    }
+
+    private String encode(List<EnergyDataRecord> records) {
+        try {
+            return writer.writeValueAsString(records);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode live prices", e);
+        }
+    }
+
+    private static boolean matches(byte[] areas, byte area) {
+        if (areas.length == 0) {
+            return true;
+        }
+        for (byte wanted : areas) {
+            if (wanted == area) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Update {
+
+        final byte area;
+        final long version;
+        final String json;
+
+        Update(byte area, long version, String json) {
+            this.area = area;
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
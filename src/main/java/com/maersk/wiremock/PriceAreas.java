@@ -0,0 +1,91 @@
+package com.maersk.wiremock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary encoding of price area names into single byte codes. The areas published by
+ * Elspotprices are registered up front; anything else is assigned the next free code.
+ */
+public final class PriceAreas {
+
+    public static final byte UNKNOWN = -1;
+
+    private static final int MAX_AREAS = 128;
+    private static final String[] NAMES = new String[MAX_AREAS];
+    private static final Map<String, Byte> CODES = new ConcurrentHashMap<>();
+    private static int count;
+
+    static {
+        for (String area : new String[]{"DK1", "DK2", "NO2", "SE3", "SE4", "SYSTEM",
+                "DE", "NO1", "NO3", "NO4", "NO5", "SE1", "SE2"}) {
+            code(area);
+        }
+    }
+
+    private PriceAreas() {
+    }
+
+    public static byte code(String area) {
+        if (area == null) {
+            return UNKNOWN;
+        }
+        Byte code = CODES.get(area);
+        return code != null ? code : register(area);
+    }
+
+    public static byte find(String area) {
+        Byte code = area != null ? CODES.get(area) : null;
+        return code != null ? code : UNKNOWN;
+    }
+
+    /**
+     * Looks {@code length} chars at {@code offset} up without creating a string, registering
+     * them as a new area only if they are not known yet.
+     */
+    public static byte code(char[] chars, int offset, int length) {
+        int known = count();
+        for (int code = 0; code < known; code++) {
+            String name = NAMES[code];
+            if (name.length() == length && matches(name, chars, offset)) {
+                return (byte) code;
+            }
+        }
+        return register(new String(chars, offset, length));
+    }
+
+    public static String name(byte code) {
+        return code < 0 ? null : NAMES[code];
+    }
+
+    public static int count() {
+        synchronized (NAMES) {
+            return count;
+        }
+    }
+
+    private static boolean matches(String name, char[] chars, int offset) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte register(String area) {
+        synchronized (NAMES) {
+            Byte existing = CODES.get(area);
+            if (existing != null) {
+                return existing;
+            }
+            if (count == MAX_AREAS) {
+                throw new IllegalStateException("Too many price areas, cannot register " + area);
+            }
+            byte code = (byte) count++;
+            NAMES[code] = area;
+            CODES.put(area, code);
+            return code;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.maersk.wiremock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads historical prices into the {@link PriceStore}. The range is split into one window per
+ * area and period (a day or a month), windows are fetched with bounded concurrency and ingested
+ * in window order. Pages are decoded straight into {@link PriceColumns}, so no per-row objects
+ * are created on the way into the store. Windows are ordered by time, so per area the checkpoint
+ * only needs the end of the last ingested window to resume an interrupted backfill.
+ */
+@Component
+public class PriceBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceBackfill.class);
+
+    private final EnergyApi energyApi;
+    private final PriceStore store;
+    private final Checkpoint checkpoint;
+    private final List<String> areas;
+    private final Period window;
+    private final int concurrency;
+    private final int retries;
+    private final Duration retryBackoff;
+    private final int pageSize;
+    private final String from;
+    private final boolean enabled;
+
+    public PriceBackfill(EnergyApi energyApi,
+                         PriceStore store,
+                         @Value("${energy.backfill.checkpoint:data/backfill.properties}") Path checkpoint,
+                         @Value("${energy.backfill.areas:DK1,DK2}") List<String> areas,
+                         @Value("${energy.backfill.window:P1M}") Period window,
+                         @Value("${energy.backfill.concurrency:4}") int concurrency,
+                         @Value("${energy.backfill.retries:3}") int retries,
+                         @Value("${energy.backfill.retry-backoff:PT1S}") Duration retryBackoff,
+                         @Value("${energy.backfill.page-size:1000}") int pageSize,
+                         @Value("${energy.backfill.from:}") String from,
+                         @Value("${energy.backfill.enabled:false}") boolean enabled) {
+        this.energyApi = energyApi;
+        this.store = store;
+        this.checkpoint = new Checkpoint(checkpoint);
+        this.areas = List.copyOf(areas);
+        this.window = window;
+        this.concurrency = concurrency;
+        this.retries = retries;
+        this.retryBackoff = retryBackoff;
+        this.pageSize = pageSize;
+        this.from = from;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || from.isBlank()) {
+            return;
+        }
+        backfill(LocalDate.parse(from), LocalDate.now(ZoneOffset.UTC)).subscribe(
+                added -> log.info("Backfill from {} finished, {} new rows", from, added),
+                e -> log.warn("Backfill from {} stopped, it resumes from the checkpoint on the next start", from, e));
+    }
+
+    /**
+     * Fetches every window of {@code [from, to)} that has not been ingested by an earlier run.
+     *
+     * @return the number of rows that were not held before
+     */
+    public Mono<Integer> backfill(LocalDate from, LocalDate to) {
+        return Flux.fromIterable(plan(from, to))
+                .flatMapSequential(this::fetch, concurrency)
+                // the checkpoint is written to disk, so not on the thread the response arrived on
+                .publishOn(Schedulers.boundedElastic())
+                .map(this::ingest)
+                .reduce(0, Integer::sum);
+    }
+
+    List<Window> plan(LocalDate from, LocalDate to) {
+        List<Window> windows = new ArrayList<>();
+        for (LocalDate start = from; start.isBefore(to); start = start.plus(window)) {
+            LocalDate end = start.plus(window).isBefore(to) ? start.plus(window) : to;
+            for (String area : areas) {
+                String done = checkpoint.get(area);
+                if (done == null || LocalDate.parse(done).isBefore(end)) {
+                    windows.add(new Window(area, start.atStartOfDay(), end.atStartOfDay()));
+                }
+            }
+        }
+        return windows;
+    }
+
+    private Mono<WindowResult> fetch(Window window) {
+        var query = EnergyQuery.between(window.start, window.end, pageSize).withAreas(List.of(window.area));
+        return energyApi.streamColumns(query, UpstreamPriority.BACKFILL)
+                .collectList()
+                .retryWhen(untilQuotaRefills(window))
+                .retryWhen(Retry.backoff(retries, retryBackoff)
+                        .doBeforeRetry(signal -> log.debug("Retrying backfill window {} after {}", window, signal.failure().toString())))
+                .map(batches -> new WindowResult(window, batches));
+    }
+
+    /**
+     * Backfill is shed first when quota runs low, which is expected rather than a failure: the
+     * window is retried once the quota has refilled, for as long as that takes and without using
+     * up the retries meant for upstream errors.
+     */
+    private static Retry untilQuotaRefills(Window window) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            if (!(signal.failure() instanceof QuotaExceededException)) {
+                return Mono.error(signal.failure());
+            }
+            var retryAfter = ((QuotaExceededException) signal.failure()).retryAfter();
+            log.debug("Upstream quota low, backfill window {} waits {}", window, retryAfter);
+            return Mono.delay(retryAfter);
+        }));
+    }
+
+    private int ingest(WindowResult result) {
+        int added = 0;
+        for (PriceColumns batch : result.batches) {
+            added += store.ingest(batch);
+        }
+        checkpoint.put(result.window.area, result.window.end.toLocalDate().toString());
+        return added;
+    }
+
+    static final class Window {
+
+        final String area;
+        final LocalDateTime start;
+        final LocalDateTime end;
+
+        Window(String area, LocalDateTime start, LocalDateTime end) {
+            this.area = area;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String toString() {
+            return area + " " + start + ".." + end;
+        }
+    }
+
+    private static final class WindowResult {
+
+        final Window window;
+        final List<PriceColumns> batches;
+
+        WindowResult(Window window, List<PriceColumns> batches) {
+            this.window = window;
+            this.batches = batches;
+        }
+    }
+}
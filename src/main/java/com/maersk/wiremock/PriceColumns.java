@@ -0,0 +1,195 @@
+package com.maersk.wiremock;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * Column-oriented, append-only storage of hourly spot prices. Each row costs 21 bytes: the
+ * hour as epoch hours (UTC), the dictionary encoded price area and both prices as fixed-point
+ * micro-units, matching the six fractional digits published upstream. Not thread-safe;
+ * {@link PriceStore} guards its columns, and batches being decoded or handed to listeners are
+ * confined to one thread at a time.
+ */
+public class PriceColumns {
+
+    public static final int PRICE_SCALE = FixedPoint.SCALE;
+    public static final long NO_PRICE = Long.MIN_VALUE;
+
+    static final ZoneId DK = ZoneId.of("Europe/Copenhagen");
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private int[] hours;
+    private byte[] areas;
+    private long[] spotPricesDkk;
+    private long[] spotPricesEur;
+    private int size;
+
+    public PriceColumns() {
+        this(1024);
+    }
+
+    public PriceColumns(int initialCapacity) {
+        hours = new int[initialCapacity];
+        areas = new byte[initialCapacity];
+        spotPricesDkk = new long[initialCapacity];
+        spotPricesEur = new long[initialCapacity];
+    }
+
+    public int append(int hourUtc, byte area, long spotPriceDkk, long spotPriceEur) {
+        if (size == hours.length) {
+            grow();
+        }
+        hours[size] = hourUtc;
+        areas[size] = area;
+        spotPricesDkk[size] = spotPriceDkk;
+        spotPricesEur[size] = spotPriceEur;
+        return size++;
+    }
+
+    public void update(int row, long spotPriceDkk, long spotPriceEur) {
+        spotPricesDkk[row] = spotPriceDkk;
+        spotPricesEur[row] = spotPriceEur;
+    }
+
+    public int append(EnergyDataRecord record) {
+        return append(epochHour(record), PriceAreas.code(record.PriceArea),
+                parsePrice(record.SpotPriceDKK), parsePrice(record.SpotPriceEUR));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int hour(int row) {
+        return hours[row];
+    }
+
+    public byte area(int row) {
+        return areas[row];
+    }
+
+    public long spotPriceDkk(int row) {
+        return spotPricesDkk[row];
+    }
+
+    public long spotPriceEur(int row) {
+        return spotPricesEur[row];
+    }
+
+    /**
+     * Visits every row whose hour lies in {@code [fromHour, toHour)}, in append order.
+     */
+    public void scan(int fromHour, int toHour, RowVisitor visitor) {
+        for (int row = 0; row < size; row++) {
+            int hour = hours[row];
+            if (hour >= fromHour && hour < toHour) {
+                visitor.visit(row, hour, areas[row], spotPricesDkk[row], spotPricesEur[row]);
+            }
+        }
+    }
+
+    /**
+     * Visits the rows {@code [fromRow, toRow)}.
+     */
+    public void scanRows(int fromRow, int toRow, RowVisitor visitor) {
+        int end = Math.min(toRow, size);
+        for (int row = Math.max(fromRow, 0); row < end; row++) {
+            visitor.visit(row, hours[row], areas[row], spotPricesDkk[row], spotPricesEur[row]);
+        }
+    }
+
+    public EnergyDataRecord toRecord(int row) {
+        return toRecord(hours[row], areas[row], spotPricesDkk[row], spotPricesEur[row]);
+    }
+
+    public static EnergyDataRecord toRecord(int hourUtc, byte area, long spotPriceDkk, long spotPriceEur) {
+        var record = new EnergyDataRecord();
+        var utc = utcHour(hourUtc);
+        record.HourUTC = HOUR_FORMAT.format(utc);
+        record.HourDK = HOUR_FORMAT.format(utc.atOffset(ZoneOffset.UTC).atZoneSameInstant(DK));
+        record.PriceArea = PriceAreas.name(area);
+        record.SpotPriceDKK = formatPrice(spotPriceDkk);
+        record.SpotPriceEUR = formatPrice(spotPriceEur);
+        return record;
+    }
+
+    public static int epochHour(EnergyDataRecord record) {
+        if (record.HourUTC != null) {
+            return epochHour(LocalDateTime.parse(record.HourUTC));
+        }
+        return (int) (LocalDateTime.parse(record.HourDK).atZone(DK).toEpochSecond() / 3600);
+    }
+
+    public static int epochHour(LocalDateTime hourUtc) {
+        return (int) (hourUtc.toEpochSecond(ZoneOffset.UTC) / 3600);
+    }
+
+    public static LocalDateTime utcHour(int epochHour) {
+        return LocalDateTime.ofEpochSecond(epochHour * 3600L, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Epoch hour of an ISO local date-time such as {@code 2023-05-16T20:00:00} taken to be UTC,
+     * read straight from {@code chars}; minutes and seconds are ignored.
+     */
+    public static int epochHour(char[] chars, int offset, int length) {
+        if (length < 13 || chars[offset + 4] != '-' || chars[offset + 7] != '-' || chars[offset + 10] != 'T') {
+            throw new DateTimeParseException("Not an ISO date-time", new String(chars, offset, length), 0);
+        }
+        int year = digits(chars, offset, 4);
+        int month = digits(chars, offset + 5, 2);
+        int day = digits(chars, offset + 8, 2);
+        int hour = digits(chars, offset + 11, 2);
+        return (int) (epochDay(year, month, day) * 24 + hour);
+    }
+
+    public static long parsePrice(String price) {
+        return price == null ? NO_PRICE : FixedPoint.parse(price);
+    }
+
+    public static String formatPrice(long price) {
+        return price == NO_PRICE ? null : FixedPoint.toString(price);
+    }
+
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                throw new DateTimeParseException("Not an ISO date-time", new String(chars, offset, count), i - offset);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date, as {@code LocalDate.toEpochDay()}.
+     */
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, hours.length * 2);
+        hours = Arrays.copyOf(hours, capacity);
+        areas = Arrays.copyOf(areas, capacity);
+        spotPricesDkk = Arrays.copyOf(spotPricesDkk, capacity);
+        spotPricesEur = Arrays.copyOf(spotPricesEur, capacity);
+    }
+
+    @FunctionalInterface
+    public interface RowVisitor {
+
+        void visit(int row, int hourUtc, byte area, long spotPriceDkk, long spotPriceEur);
+    }
+}
@@ -0,0 +1,126 @@
+package com.maersk.wiremock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A subset of the {@link EnergyDataRecord} fields, as asked for with {@code fields=} on
+ * {@code /data}. Kept as a bit mask so the decoder can test a field name without allocating.
+ */
+public final class PriceFields {
+
+    public static final int HOUR_UTC = 1;
+    public static final int HOUR_DK = 1 << 1;
+    public static final int PRICE_AREA = 1 << 2;
+    public static final int SPOT_PRICE_DKK = 1 << 3;
+    public static final int SPOT_PRICE_EUR = 1 << 4;
+
+    private static final String[] NAMES = {"HourUTC", "HourDK", "PriceArea", "SpotPriceDKK", "SpotPriceEUR"};
+
+    public static final PriceFields ALL = new PriceFields((1 << NAMES.length) - 1);
+
+    private final int mask;
+
+    private PriceFields(int mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * Parses a comma separated list of field names, matched ignoring case; every field when
+     * {@code value} is empty.
+     */
+    public static PriceFields parse(String value) {
+        if (value == null || value.isBlank()) {
+            return ALL;
+        }
+        int mask = 0;
+        for (String name : value.split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            int field = 0;
+            for (int i = 0; i < NAMES.length; i++) {
+                if (NAMES[i].equalsIgnoreCase(name.trim())) {
+                    field = 1 << i;
+                }
+            }
+            if (field == 0) {
+                throw new IllegalArgumentException("Unknown field '" + name.trim() + "'");
+            }
+            mask |= field;
+        }
+        if (mask == 0) {
+            throw new IllegalArgumentException("No fields in '" + value + "'");
+        }
+        return mask == ALL.mask ? ALL : new PriceFields(mask);
+    }
+
+    /**
+     * The bit of the field called {@code name}, or 0 for one not mapped at all.
+     */
+    public static int field(String name) {
+        switch (name) {
+            case "HourUTC":
+                return HOUR_UTC;
+            case "HourDK":
+                return HOUR_DK;
+            case "PriceArea":
+                return PRICE_AREA;
+            case "SpotPriceDKK":
+                return SPOT_PRICE_DKK;
+            case "SpotPriceEUR":
+                return SPOT_PRICE_EUR;
+            default:
+                return 0;
+        }
+    }
+
+    public boolean includes(int field) {
+        return (mask & field) != 0;
+    }
+
+    public boolean isAll() {
+        return mask == ALL.mask;
+    }
+
+    /**
+     * The names of the included fields, in record order.
+     */
+    public List<String> names() {
+        List<String> names = new ArrayList<>(NAMES.length);
+        for (int i = 0; i < NAMES.length; i++) {
+            if (includes(1 << i)) {
+                names.add(NAMES[i]);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * A copy of {@code record} holding only the included fields.
+     */
+    public EnergyDataRecord project(EnergyDataRecord record) {
+        var projected = new EnergyDataRecord();
+        projected.HourUTC = includes(HOUR_UTC) ? record.HourUTC : null;
+        projected.HourDK = includes(HOUR_DK) ? record.HourDK : null;
+        projected.PriceArea = includes(PRICE_AREA) ? record.PriceArea : null;
+        projected.SpotPriceDKK = includes(SPOT_PRICE_DKK) ? record.SpotPriceDKK : null;
+        projected.SpotPriceEUR = includes(SPOT_PRICE_EUR) ? record.SpotPriceEUR : null;
+        return projected;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PriceFields && ((PriceFields) other).mask == mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", names());
+    }
+}
@@ -0,0 +1,106 @@
+package com.maersk.wiremock;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Per price area index of store rows, kept sorted by hour so that range lookups are two
+ * binary searches. Not thread-safe; {@link PriceStore} guards it.
+ */
+public class PriceIndex {
+
+    private final Area[] areas = new Area[128];
+
+    public int find(byte area, int hour) {
+        Area index = area >= 0 ? areas[area] : null;
+        if (index == null) {
+            return -1;
+        }
+        int position = index.lowerBound(hour);
+        return position < index.size && index.hours[position] == hour ? index.rows[position] : -1;
+    }
+
+    public void put(byte area, int hour, int row) {
+        Area index = areas[area];
+        if (index == null) {
+            index = areas[area] = new Area();
+        }
+        index.put(hour, row);
+    }
+
+    /**
+     * Passes the rows of {@code area} whose hour lies in {@code [fromHour, toHour)} to
+     * {@code rows} in ascending hour order.
+     */
+    public void range(byte area, int fromHour, int toHour, IntConsumer rows) {
+        Area index = area >= 0 ? areas[area] : null;
+        if (index == null) {
+            return;
+        }
+        int end = index.lowerBound(toHour);
+        for (int position = index.lowerBound(fromHour); position < end; position++) {
+            rows.accept(index.rows[position]);
+        }
+    }
+
+    public int count(byte area) {
+        Area index = area >= 0 ? areas[area] : null;
+        return index == null ? 0 : index.size;
+    }
+
+    /**
+     * The number of rows of {@code area} whose hour lies in {@code [fromHour, toHour)}.
+     */
+    public int count(byte area, int fromHour, int toHour) {
+        Area index = area >= 0 ? areas[area] : null;
+        return index == null ? 0 : index.lowerBound(toHour) - index.lowerBound(fromHour);
+    }
+
+    public int minHour(byte area) {
+        Area index = area >= 0 ? areas[area] : null;
+        return index == null || index.size == 0 ? Integer.MAX_VALUE : index.hours[0];
+    }
+
+    public int maxHour(byte area) {
+        Area index = area >= 0 ? areas[area] : null;
+        return index == null || index.size == 0 ? Integer.MIN_VALUE : index.hours[index.size - 1];
+    }
+
+    private static final class Area {
+
+        int[] hours = new int[256];
+        int[] rows = new int[256];
+        int size;
+
+        int lowerBound(int hour) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (hours[mid] < hour) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        void put(int hour, int row) {
+            int position = size > 0 && hours[size - 1] < hour ? size : lowerBound(hour);
+            if (position < size && hours[position] == hour) {
+                rows[position] = row;
+                return;
+            }
+            if (size == hours.length) {
+                hours = Arrays.copyOf(hours, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            System.arraycopy(hours, position, hours, position + 1, size - position);
+            System.arraycopy(rows, position, rows, position + 1, size - position);
+            hours[position] = hour;
+            rows[position] = row;
+            size++;
+        }
+    }
+}
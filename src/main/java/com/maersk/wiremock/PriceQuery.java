@@ -0,0 +1,121 @@
+package com.maersk.wiremock;
+
+import org.springframework.util.MultiValueMap;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Filter of a {@code /data} request: {@code area} (repeatable or comma separated),
+ * {@code from} inclusive and {@code to} exclusive as ISO dates or date-times. Times are
+ * HourUTC unless {@code zone=DK} asks for HourDK. {@code sort=asc|desc} orders the rows by
+ * HourUTC and {@code limit} caps how many are returned. {@code fields} names the
+ * {@link PriceFields} to include in each row. Areas must be ones {@link PriceAreas} knows.
+ */
+public class PriceQuery {
+
+    private static final Pattern AREA = Pattern.compile("[A-Z][A-Z0-9]{1,9}");
+
+    public final List<String> areas;
+    public final LocalDateTime from;
+    public final LocalDateTime to;
+    public final String sort;
+    public final int limit;
+    public final PriceFields fields;
+
+    private PriceQuery(List<String> areas, LocalDateTime from, LocalDateTime to, String sort, int limit, PriceFields fields) {
+        this.areas = areas;
+        this.from = from;
+        this.to = to;
+        this.sort = sort;
+        this.limit = limit;
+        this.fields = fields;
+    }
+
+    public static PriceQuery of(MultiValueMap<String, String> params) {
+        List<String> areas = new ArrayList<>();
+        for (String value : params.getOrDefault("area", List.of())) {
+            for (String area : value.split(",")) {
+                if (!area.isBlank()) {
+                    areas.add(area(area));
+                }
+            }
+        }
+        boolean dk = "DK".equalsIgnoreCase(params.getFirst("zone"));
+        return new PriceQuery(List.copyOf(areas), time(params.getFirst("from"), dk), time(params.getFirst("to"), dk),
+                sort(params.getFirst("sort")), limit(params.getFirst("limit")), PriceFields.parse(params.getFirst("fields")));
+    }
+
+    public boolean isFiltered() {
+        return !areas.isEmpty() || from != null || to != null || sort != null || limit > 0;
+    }
+
+    public byte[] areaCodes() {
+        byte[] codes = new byte[areas.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = PriceAreas.find(areas.get(i));
+        }
+        return codes;
+    }
+
+    public int fromHour() {
+        return from == null ? Integer.MIN_VALUE : PriceColumns.epochHour(from);
+    }
+
+    public int toHour() {
+        return to == null ? Integer.MAX_VALUE : PriceColumns.epochHour(to);
+    }
+
+    private static String area(String value) {
+        String area = value.trim().toUpperCase(Locale.ROOT);
+        if (!AREA.matcher(area).matches() || PriceAreas.find(area) == PriceAreas.UNKNOWN) {
+            throw new IllegalArgumentException("Unknown area '" + value + "'");
+        }
+        return area;
+    }
+
+    private static String sort(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String sort = value.trim().toLowerCase(Locale.ROOT);
+        if (!sort.equals("asc") && !sort.equals("desc")) {
+            throw new IllegalArgumentException("Invalid sort '" + value + "', expected asc or desc");
+        }
+        return sort;
+    }
+
+    private static int limit(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            int limit = Integer.parseInt(value.trim());
+            if (limit > 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid limit '" + value + "'");
+    }
+
+    private static LocalDateTime time(String value, boolean dk) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        LocalDateTime time;
+        try {
+            time = value.length() <= 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time '" + value + "'", e);
+        }
+        return dk ? time.atZone(PriceColumns.DK).withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime() : time;
+    }
+}
@@ -0,0 +1,18 @@
+package com.maersk.wiremock;
+
+/**
+ * Price statistics of one area over a day or a month, as served by {@code /data/rollups}.
+ * Prices are decimals with six fractional digits, like upstream publishes them.
+ */
+public class PriceRollup {
+
+    public String PriceArea;
+    public String Period;
+    public int Hours;
+    public String MinDKK;
+    public String MaxDKK;
+    public String AvgDKK;
+    public String MinEUR;
+    public String MaxEUR;
+    public String AvgEUR;
+}
@@ -0,0 +1,287 @@
+package com.maersk.wiremock;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Daily and monthly min/max/average prices per area, by Danish calendar. Each ingest recomputes
+ * only the days it touched, from the store, and the months holding them from their days, so
+ * updated prices are handled as well as new hours. That recompute runs on a thread of its own,
+ * so ingesting never waits for it. Lookups are hash map gets; a full rebuild splits the history
+ * of every area into day ranges and recomputes them on the fork-join pool.
+ */
+@Component
+public class PriceRollups implements PriceStore.Listener, DisposableBean {
+
+    private static final int DAYS_PER_TASK = 64;
+
+    private final PriceStore store;
+    private final ExecutorService updates = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "price-rollups");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Long, Rollup> days = new ConcurrentHashMap<>();
+    private final Map<Long, Rollup> months = new ConcurrentHashMap<>();
+
+    /**
+     * Taking the snapshot makes sure its rows are in the store before the initial rebuild.
+     */
+    public PriceRollups(PriceStore store, PriceSnapshot snapshot) {
+        this.store = store;
+        store.addListener(this);
+        rebuild();
+    }
+
+    public enum Granularity {
+        DAY, MONTH
+    }
+
+    /**
+     * Recomputes every rollup from the store.
+     */
+    public synchronized void rebuild() {
+        days.clear();
+        months.clear();
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (int code = 0; code < PriceAreas.count(); code++) {
+            byte area = (byte) code;
+            int minHour = store.minHour(area);
+            if (minHour <= store.maxHour(area)) {
+                tasks.add(new RebuildDays(area, day(minHour), day(store.maxHour(area)) + 1));
+            }
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        Set<Long> touched = new TreeSet<>();
+        days.keySet().forEach(key -> touched.add(key(area(key), month(LocalDate.ofEpochDay(bucket(key))))));
+        touched.parallelStream().forEach(key -> recomputeMonth(area(key), bucket(key)));
+    }
+
+    @Override
+    public void onIngest(PriceColumns changes) {
+        Set<Long> touchedDays = new TreeSet<>();
+        changes.scanRows(0, changes.size(), (row, hour, area, spotPriceDkk, spotPriceEur) -> touchedDays.add(key(area, day(hour))));
+        updates.execute(() -> update(touchedDays));
+    }
+
+    /**
+     * Waits until the rollups reflect every ingest so far.
+     */
+    void flush() throws InterruptedException, ExecutionException {
+        updates.submit(() -> {
+        }).get();
+    }
+
+    @Override
+    public void destroy() {
+        updates.shutdownNow();
+    }
+
+    private synchronized void update(Set<Long> touchedDays) {
+        Set<Long> touchedMonths = new TreeSet<>();
+        for (long key : touchedDays) {
+            long day = bucket(key);
+            recomputeDay(area(key), day);
+            touchedMonths.add(key(area(key), month(LocalDate.ofEpochDay(day))));
+        }
+        touchedMonths.forEach(key -> recomputeMonth(area(key), bucket(key)));
+    }
+
+    /**
+     * Rollups of {@code area} for the days or months overlapping {@code [from, to)}, oldest first.
+     */
+    public List<PriceRollup> query(byte area, Granularity granularity, LocalDate from, LocalDate to) {
+        List<PriceRollup> result = new ArrayList<>();
+        if (granularity == Granularity.DAY) {
+            for (long day = from.toEpochDay(); day < to.toEpochDay(); day++) {
+                Rollup rollup = days.get(key(area, day));
+                if (rollup != null) {
+                    result.add(rollup.toPriceRollup(area, LocalDate.ofEpochDay(day).toString()));
+                }
+            }
+        } else {
+            for (long month = month(from); month < month(to.minusDays(1)) + 1; month++) {
+                Rollup rollup = months.get(key(area, month));
+                if (rollup != null) {
+                    result.add(rollup.toPriceRollup(area, YearMonth.of((int) (month / 12), (int) (month % 12) + 1).toString()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The first and last Danish day with prices for {@code area}, or null if there are none.
+     */
+    public LocalDate[] span(byte area) {
+        int minHour = store.minHour(area);
+        int maxHour = store.maxHour(area);
+        return minHour > maxHour ? null : new LocalDate[]{LocalDate.ofEpochDay(day(minHour)), LocalDate.ofEpochDay(day(maxHour))};
+    }
+
+    private void recomputeDay(byte area, long day) {
+        var start = LocalDate.ofEpochDay(day).atStartOfDay(PriceColumns.DK).toEpochSecond() / 3600;
+        var end = LocalDate.ofEpochDay(day + 1).atStartOfDay(PriceColumns.DK).toEpochSecond() / 3600;
+        var rollup = new Rollup();
+        store.scan(area, (int) start, (int) end, (row, hour, code, spotPriceDkk, spotPriceEur) -> rollup.add(spotPriceDkk, spotPriceEur));
+        if (rollup.hours == 0) {
+            days.remove(key(area, day));
+        } else {
+            days.put(key(area, day), rollup);
+        }
+    }
+
+    private void recomputeMonth(byte area, long month) {
+        var first = LocalDate.of((int) (month / 12), (int) (month % 12) + 1, 1);
+        var rollup = new Rollup();
+        for (long day = first.toEpochDay(); day < first.plusMonths(1).toEpochDay(); day++) {
+            Rollup daily = days.get(key(area, day));
+            if (daily != null) {
+                rollup.merge(daily);
+            }
+        }
+        if (rollup.hours == 0) {
+            months.remove(key(area, month));
+        } else {
+            months.put(key(area, month), rollup);
+        }
+    }
+
+    private static long day(int epochHour) {
+        return PriceColumns.utcHour(epochHour).atOffset(ZoneOffset.UTC).atZoneSameInstant(PriceColumns.DK).toLocalDate().toEpochDay();
+    }
+
+    private static long month(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    private static long key(byte area, long bucket) {
+        return (long) area << 32 | (bucket & 0xFFFFFFFFL);
+    }
+
+    private static byte area(long key) {
+        return (byte) (key >>> 32);
+    }
+
+    private static long bucket(long key) {
+        return (int) key;
+    }
+
+    private final class RebuildDays extends RecursiveAction {
+
+        private final byte area;
+        private final long fromDay;
+        private final long toDay;
+
+        RebuildDays(byte area, long fromDay, long toDay) {
+            this.area = area;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+        }
+
+        @Override
+        protected void compute() {
+            if (toDay - fromDay <= DAYS_PER_TASK) {
+                for (long day = fromDay; day < toDay; day++) {
+                    recomputeDay(area, day);
+                }
+                return;
+            }
+            long middle = (fromDay + toDay) >>> 1;
+            invokeAll(new RebuildDays(area, fromDay, middle), new RebuildDays(area, middle, toDay));
+        }
+    }
+
+    /**
+     * Hours, sum, min and max of both prices over a bucket, in micro-units.
+     */
+    private static final class Rollup {
+
+        int hours;
+        final Stats dkk = new Stats();
+        final Stats eur = new Stats();
+
+        void add(long spotPriceDkk, long spotPriceEur) {
+            hours++;
+            dkk.add(spotPriceDkk);
+            eur.add(spotPriceEur);
+        }
+
+        void merge(Rollup other) {
+            hours += other.hours;
+            dkk.merge(other.dkk);
+            eur.merge(other.eur);
+        }
+
+        PriceRollup toPriceRollup(byte area, String period) {
+            var rollup = new PriceRollup();
+            rollup.PriceArea = PriceAreas.name(area);
+            rollup.Period = period;
+            rollup.Hours = hours;
+            rollup.MinDKK = dkk.min();
+            rollup.MaxDKK = dkk.max();
+            rollup.AvgDKK = dkk.avg();
+            rollup.MinEUR = eur.min();
+            rollup.MaxEUR = eur.max();
+            rollup.AvgEUR = eur.avg();
+            return rollup;
+        }
+    }
+
+    private static final class Stats {
+
+        int count;
+        long sum;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        void add(long price) {
+            if (price == PriceColumns.NO_PRICE) {
+                return;
+            }
+            count++;
+            sum += price;
+            min = Math.min(min, price);
+            max = Math.max(max, price);
+        }
+
+        void merge(Stats other) {
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        String min() {
+            return count == 0 ? null : PriceColumns.formatPrice(min);
+        }
+
+        String max() {
+            return count == 0 ? null : PriceColumns.formatPrice(max);
+        }
+
+        String avg() {
+            return count == 0 ? null : PriceColumns.formatPrice(Math.round((double) sum / count));
+        }
+    }
+}
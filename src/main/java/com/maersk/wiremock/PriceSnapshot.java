@@ -0,0 +1,244 @@
+package com.maersk.wiremock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary copy of every price row ingested into the {@link PriceStore}, replayed
+ * through a {@link MappedByteBuffer} on startup so the store is warm before the first sync.
+ *
+ * <pre>
+ * header: magic "ESPS" | u16 version | u16 row size
+ * block:  i32 row count | i32 CRC32 of rows | rows
+ * row:    i32 epoch hour (UTC) | 8 bytes ASCII price area | i64 DKK micros | i64 EUR micros
+ * </pre>
+ *
+ * A block whose length or checksum does not verify marks a torn write; it and anything after
+ * it are truncated away and later appends continue from the last good block. Blocks are encoded
+ * as the store applies them and appended by a single writer thread, which syncs the file once
+ * for however many blocks were queued meanwhile.
+ */
+@Component
+public class PriceSnapshot implements PriceStore.Listener, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceSnapshot.class);
+
+    static final int MAGIC = 0x45535053;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int BLOCK_HEADER_SIZE = 8;
+    static final int AREA_SIZE = 8;
+    static final int ROW_SIZE = 4 + AREA_SIZE + 8 + 8;
+
+    private final Path file;
+    private final boolean enabled;
+    // marks the end of the queue on shutdown
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final Map<String, Integer> loadedWatermarks = new HashMap<>();
+    private final BlockingQueue<ByteBuffer> pending = new LinkedBlockingQueue<>();
+    private FileChannel channel;
+    private Thread writer;
+
+    public PriceSnapshot(@Value("${energy.snapshot.file:data/prices.snapshot}") Path file,
+                         @Value("${energy.snapshot.enabled:true}") boolean enabled,
+                         PriceStore store) {
+        this.file = file;
+        this.enabled = enabled;
+        if (enabled) {
+            long started = System.nanoTime();
+            int rows = open(store);
+            writer = new Thread(this::write, "price-snapshot-writer");
+            writer.setDaemon(true);
+            writer.start();
+            store.addListener(this);
+            log.info("Loaded {} price rows from {} in {} ms", rows, file, (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Highest epoch hour per price area found in the snapshot when it was opened.
+     */
+    public Map<String, Integer> loadedWatermarks() {
+        return Map.copyOf(loadedWatermarks);
+    }
+
+    @Override
+    public void onIngest(PriceColumns changes) {
+        if (writer == null || changes.size() == 0) {
+            return;
+        }
+        var block = ByteBuffer.allocate(BLOCK_HEADER_SIZE + changes.size() * ROW_SIZE);
+        block.position(BLOCK_HEADER_SIZE);
+        changes.scanRows(0, changes.size(), (row, hour, area, spotPriceDkk, spotPriceEur) -> {
+            block.putInt(hour);
+            byte[] name = PriceAreas.name(area).getBytes(StandardCharsets.US_ASCII);
+            block.put(name, 0, Math.min(name.length, AREA_SIZE));
+            for (int i = name.length; i < AREA_SIZE; i++) {
+                block.put((byte) 0);
+            }
+            block.putLong(spotPriceDkk);
+            block.putLong(spotPriceEur);
+        });
+        var crc = new CRC32();
+        crc.update(block.array(), BLOCK_HEADER_SIZE, block.position() - BLOCK_HEADER_SIZE);
+        block.putInt(0, changes.size());
+        block.putInt(4, (int) crc.getValue());
+        pending.add(block.flip());
+    }
+
+    /**
+     * Appends queued blocks until closed, syncing once per batch rather than once per block.
+     */
+    private void write() {
+        List<ByteBuffer> batch = new ArrayList<>();
+        boolean closed = false;
+        while (!closed) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            pending.drainTo(batch);
+            int rows = 0;
+            try {
+                for (ByteBuffer block : batch) {
+                    if (block == CLOSE) {
+                        closed = true;
+                        continue;
+                    }
+                    rows += block.getInt(0);
+                    while (block.hasRemaining()) {
+                        channel.write(block);
+                    }
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                log.warn("Cannot append {} rows to {}", rows, file, e);
+            }
+            batch.clear();
+        }
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        if (writer != null) {
+            pending.add(CLOSE);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private int open(PriceStore store) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_SIZE) {
+                writeHeader();
+                return 0;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC || mapped.getShort(4) != VERSION || mapped.getShort(6) != ROW_SIZE) {
+                throw new IllegalStateException(file + " is not a version " + VERSION + " price snapshot");
+            }
+            int rows = 0;
+            int position = HEADER_SIZE;
+            while (position < mapped.limit()) {
+                int blockRows = readBlock(mapped, position, store);
+                if (blockRows < 0) {
+                    log.warn("Torn write in {} at offset {}, truncating {} bytes", file, position, mapped.limit() - position);
+                    break;
+                }
+                rows += blockRows;
+                position += BLOCK_HEADER_SIZE + blockRows * ROW_SIZE;
+            }
+            channel.truncate(position);
+            channel.position(position);
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open price snapshot " + file, e);
+        }
+    }
+
+    /**
+     * @return the rows in the block at {@code position}, or -1 if it is incomplete or corrupt
+     */
+    private int readBlock(MappedByteBuffer mapped, int position, PriceStore store) {
+        if (mapped.limit() - position < BLOCK_HEADER_SIZE) {
+            return -1;
+        }
+        int count = mapped.getInt(position);
+        int checksum = mapped.getInt(position + 4);
+        int start = position + BLOCK_HEADER_SIZE;
+        if (count <= 0 || (long) count * ROW_SIZE > mapped.limit() - start) {
+            return -1;
+        }
+        var rows = mapped.slice(start, count * ROW_SIZE);
+        var crc = new CRC32();
+        crc.update(rows.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return -1;
+        }
+        var batch = new PriceColumns(count);
+        byte[] name = new byte[AREA_SIZE];
+        for (int i = 0; i < count; i++) {
+            int hour = rows.getInt();
+            rows.get(name);
+            int length = 0;
+            while (length < AREA_SIZE && name[length] != 0) {
+                length++;
+            }
+            String area = new String(name, 0, length, StandardCharsets.US_ASCII);
+            batch.append(hour, PriceAreas.code(area), rows.getLong(), rows.getLong());
+            loadedWatermarks.merge(area, hour, Math::max);
+        }
+        store.ingest(batch);
+        return count;
+    }
+
+    private void writeHeader() throws IOException {
+        var header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) ROW_SIZE)
+                .flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+        channel.force(false);
+        channel.position(HEADER_SIZE);
+    }
+}
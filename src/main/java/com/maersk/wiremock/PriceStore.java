@@ -0,0 +1,204 @@
+package com.maersk.wiremock;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Locally held spot prices: rows live in {@link PriceColumns} and are looked up through a
+ * {@link PriceIndex}. Ingesting an hour that is already present overwrites its prices.
+ */
+@Component
+public class PriceStore {
+
+    private final PriceColumns columns = new PriceColumns();
+    private final PriceIndex index = new PriceIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile long version;
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return the number of rows that were not held before
+     */
+    public int ingest(Collection<EnergyDataRecord> records) {
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        var batch = new PriceColumns(records.size());
+        for (EnergyDataRecord record : records) {
+            if (record.PriceArea != null && (record.HourUTC != null || record.HourDK != null)) {
+                batch.append(record);
+            }
+        }
+        return ingest(batch);
+    }
+
+    /**
+     * @return the number of rows that were not held before
+     */
+    public int ingest(PriceColumns batch) {
+        int added = 0;
+        var changes = new PriceColumns(batch.size());
+        lock.writeLock().lock();
+        try {
+            for (int row = 0; row < batch.size(); row++) {
+                int hour = batch.hour(row);
+                byte area = batch.area(row);
+                long spotPriceDkk = batch.spotPriceDkk(row);
+                long spotPriceEur = batch.spotPriceEur(row);
+                int existing = index.find(area, hour);
+                if (existing < 0) {
+                    index.put(area, hour, columns.append(hour, area, spotPriceDkk, spotPriceEur));
+                    added++;
+                } else if (columns.spotPriceDkk(existing) != spotPriceDkk || columns.spotPriceEur(existing) != spotPriceEur) {
+                    columns.update(existing, spotPriceDkk, spotPriceEur);
+                } else {
+                    continue;
+                }
+                changes.append(hour, area, spotPriceDkk, spotPriceEur);
+            }
+            if (changes.size() > 0) {
+                version++;
+                // still locked, so listeners see ingests in the order they were applied
+                listeners.forEach(listener -> listener.onIngest(changes));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return added;
+    }
+
+    /**
+     * Records of the given areas whose HourUTC lies in {@code [fromHour, toHour)}, ordered by
+     * area and hour. An empty {@code areas} array selects every area.
+     */
+    public List<EnergyDataRecord> query(byte[] areas, int fromHour, int toHour) {
+        List<EnergyDataRecord> records = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (areas.length == 0) {
+                for (int area = 0; area < PriceAreas.count(); area++) {
+                    index.range((byte) area, fromHour, toHour, row -> records.add(columns.toRecord(row)));
+                }
+            } else {
+                for (byte area : areas) {
+                    index.range(area, fromHour, toHour, row -> records.add(columns.toRecord(row)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return records;
+    }
+
+    /**
+     * Visits the rows of {@code area} whose HourUTC lies in {@code [fromHour, toHour)}, in hour order.
+     */
+    public void scan(byte area, int fromHour, int toHour, PriceColumns.RowVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            index.range(area, fromHour, toHour, row -> visitor.visit(row, columns.hour(row), area,
+                    columns.spotPriceDkk(row), columns.spotPriceEur(row)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether every hour of {@code [fromHour, toHour)} is held for each of {@code areas}, or for
+     * every area held when it is empty, so a local answer has every row upstream would send.
+     * Upstream publishes one row per area and hour, so that is a matter of counting rows. Open
+     * ranges are never covered: there may always be rows beyond those held.
+     */
+    public boolean covers(byte[] areas, int fromHour, int toHour) {
+        if (fromHour == Integer.MIN_VALUE || toHour == Integer.MAX_VALUE || fromHour >= toHour) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            boolean any = false;
+            for (int i = 0; i < (areas.length == 0 ? PriceAreas.count() : areas.length); i++) {
+                byte area = areas.length == 0 ? (byte) i : areas[i];
+                if (areas.length == 0 && index.count(area) == 0) {
+                    continue;
+                }
+                if (index.count(area, fromHour, toHour) != toHour - fromHour) {
+                    return false;
+                }
+                any = true;
+            }
+            return any;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The number of rows {@link #query} would return.
+     */
+    public int count(byte[] areas, int fromHour, int toHour) {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (int i = 0; i < (areas.length == 0 ? PriceAreas.count() : areas.length); i++) {
+                count += index.count(areas.length == 0 ? (byte) i : areas[i], fromHour, toHour);
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int minHour(byte area) {
+        lock.readLock().lock();
+        try {
+            return index.minHour(area);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int maxHour(byte area) {
+        lock.readLock().lock();
+        try {
+            return index.maxHour(area);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return columns.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Notified after each ingest with the rows that were added or whose prices changed. Calls are
+     * made in ingest order while the store is write-locked, so a listener should hand slow work
+     * off rather than do it in place. The changes are not touched again once passed on, so they
+     * can be handed off as they are.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        void onIngest(PriceColumns changes);
+    }
+}
@@ -0,0 +1,156 @@
+package com.maersk.wiremock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link PriceStore} up to date by asking upstream only for hours after the highest
+ * HourUTC already ingested per price area. Areas sharing a watermark are fetched together, so
+ * in steady state one request returns just the newly published hours. Watermarks are kept in
+ * a {@link Checkpoint} and survive restarts, capped at what the store holds once the
+ * {@link PriceSnapshot}, if any, has been replayed: rows lost to a torn write, or never persisted
+ * at all, are fetched again.
+ * When to poll is left to the {@link PublicationSchedule}, which is told when hours of the next
+ * day have been ingested.
+ */
+@Component
+public class PriceSync {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceSync.class);
+
+    private final EnergyApi energyApi;
+    private final PriceStore store;
+    private final Checkpoint checkpoint;
+    private final Duration initialLookback;
+    private final int pageSize;
+    private final boolean enabled;
+    private final PublicationSchedule schedule;
+    private final Map<String, LocalDateTime> watermarks = new ConcurrentHashMap<>();
+
+    public PriceSync(EnergyApi energyApi,
+                     PriceStore store,
+                     PriceSnapshot snapshot,
+                     @Value("${energy.sync.checkpoint:data/sync.properties}") Path checkpoint,
+                     @Value("${energy.sync.initial-lookback:P7D}") Duration initialLookback,
+                     @Value("${energy.sync.page-size:1000}") int pageSize,
+                     @Value("${energy.sync.enabled:true}") boolean enabled,
+                     PublicationSchedule schedule) {
+        this.energyApi = energyApi;
+        this.store = store;
+        this.checkpoint = new Checkpoint(checkpoint);
+        this.initialLookback = initialLookback;
+        this.pageSize = pageSize;
+        this.enabled = enabled;
+        this.schedule = schedule;
+        // a saved watermark only counts for rows the store still holds, whether replayed from the
+        // snapshot or not lost at all, so history that did not survive a restart is fetched again
+        this.checkpoint.entries().forEach((area, hour) -> {
+            int held = store.maxHour(PriceAreas.find(area));
+            if (held != Integer.MIN_VALUE) {
+                LocalDateTime saved = LocalDateTime.parse(hour);
+                LocalDateTime loaded = PriceColumns.utcHour(held);
+                watermarks.put(area, saved.isBefore(loaded) ? saved : loaded);
+            }
+        });
+    }
+
+    /**
+     * Checks every tick whether the {@link PublicationSchedule} wants a poll; ticks that do not
+     * cost nothing upstream.
+     */
+    @Scheduled(fixedDelayString = "${energy.poll.tick:PT1M}")
+    public void scheduledSync() {
+        if (!enabled || !schedule.isDue(Instant.now())) {
+            return;
+        }
+        try {
+            Integer added = sync().block();
+            log.debug("Synced {} new rows, watermarks {}", added, watermarks);
+        } catch (RuntimeException e) {
+            log.warn("Price sync failed, retrying at the next poll", e);
+        } finally {
+            schedule.polled(Instant.now());
+            log.debug("{}", schedule);
+        }
+    }
+
+    /**
+     * @return the number of rows ingested
+     */
+    public Mono<Integer> sync() {
+        return Flux.fromIterable(plan())
+                .concatMap(this::sync)
+                .reduce(0, Integer::sum)
+                .doOnSuccess(added -> persist());
+    }
+
+    public Map<String, LocalDateTime> watermarks() {
+        return Map.copyOf(watermarks);
+    }
+
+    List<EnergyQuery> plan() {
+        if (watermarks.isEmpty()) {
+            var start = LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS).minus(initialLookback);
+            return List.of(EnergyQuery.since(start, pageSize));
+        }
+        Map<LocalDateTime, List<String>> areasByWatermark = new TreeMap<>();
+        watermarks.forEach((area, hour) -> areasByWatermark.computeIfAbsent(hour, h -> new ArrayList<>()).add(area));
+        List<EnergyQuery> queries = new ArrayList<>();
+        areasByWatermark.forEach((hour, areas) -> queries.add(EnergyQuery.since(hour.plusHours(1), pageSize).withAreas(areas)));
+        return queries;
+    }
+
+    private Mono<Integer> sync(EnergyQuery query) {
+        return energyApi.stream(query, UpstreamPriority.SYNC)
+                .filter(this::isNew)
+                .buffer(pageSize)
+                .map(batch -> {
+                    store.ingest(batch);
+                    batch.forEach(record -> watermarks.merge(record.PriceArea, LocalDateTime.parse(record.HourUTC),
+                            (current, hour) -> hour.isAfter(current) ? hour : current));
+                    if (batch.stream().anyMatch(PriceSync::isNextDay)) {
+                        schedule.published(Instant.now());
+                    }
+                    return batch.size();
+                })
+                .reduce(0, Integer::sum);
+    }
+
+    private static boolean isNextDay(EnergyDataRecord record) {
+        LocalDate day = LocalDateTime.parse(record.HourUTC).atOffset(ZoneOffset.UTC).atZoneSameInstant(PriceColumns.DK).toLocalDate();
+        return day.isAfter(LocalDate.now(PriceColumns.DK));
+    }
+
+    private boolean isNew(EnergyDataRecord record) {
+        if (record.PriceArea == null || record.HourUTC == null) {
+            return false;
+        }
+        LocalDateTime watermark = watermarks.get(record.PriceArea);
+        return watermark == null || LocalDateTime.parse(record.HourUTC).isAfter(watermark);
+    }
+
+    private void persist() {
+        Map<String, String> values = new HashMap<>();
+        watermarks.forEach((area, hour) -> values.put(area, hour.toString()));
+        checkpoint.putAll(values);
+    }
+}
@@ -0,0 +1,165 @@
+package com.maersk.wiremock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Decides when {@link PriceSync} next polls upstream. Day-ahead prices are published in one
+ * daily batch, so the time of day of that batch is learnt from the {@code Last-Modified} of past
+ * responses: polling is frequent inside that window until today's batch has been seen, and
+ * backs off to the slow interval for the rest of the day. Until enough publications have been
+ * seen the configured default window is used. With adaptive polling off every poll is
+ * {@code energy.sync.interval} apart.
+ */
+@Component
+public class PublicationSchedule {
+
+    static final int MIN_SAMPLES = 3;
+
+    private final boolean adaptive;
+    private final Duration interval;
+    private final Duration fastInterval;
+    private final Duration slowInterval;
+    private final Duration margin;
+    private final LocalTime defaultStart;
+    private final LocalTime defaultEnd;
+    private final int history;
+    // modifications earlier in the day are corrections, not the daily batch
+    private final LocalTime earliest;
+    // the first Last-Modified of each day, oldest first
+    private final Deque<Instant> publications = new ArrayDeque<>();
+
+    private Instant nextPoll = Instant.MIN;
+
+    public PublicationSchedule(@Value("${energy.sync.interval:PT5M}") Duration interval,
+                               @Value("${energy.poll.adaptive:true}") boolean adaptive,
+                               @Value("${energy.poll.fast-interval:PT2M}") Duration fastInterval,
+                               @Value("${energy.poll.slow-interval:PT2H}") Duration slowInterval,
+                               @Value("${energy.poll.margin:PT20M}") Duration margin,
+                               @Value("${energy.poll.default-window:12:00-14:00}") String defaultWindow,
+                               @Value("${energy.poll.history:14}") int history,
+                               @Value("${energy.poll.default-window-slack:PT3H}") Duration defaultWindowSlack) {
+        this.interval = interval;
+        this.adaptive = adaptive;
+        this.fastInterval = fastInterval;
+        this.slowInterval = slowInterval;
+        this.margin = margin;
+        String[] window = defaultWindow.split("-");
+        this.defaultStart = LocalTime.parse(window[0].trim());
+        this.defaultEnd = LocalTime.parse(window[1].trim());
+        this.history = history;
+        this.earliest = LocalTime.ofSecondOfDay(Math.max(0, defaultStart.toSecondOfDay() - defaultWindowSlack.toSeconds()));
+    }
+
+    /**
+     * Records the {@code Last-Modified} of an upstream response.
+     */
+    public void observe(HttpHeaders headers) {
+        long lastModified = headers.getLastModified();
+        if (lastModified > 0) {
+            observe(Instant.ofEpochMilli(lastModified));
+        }
+    }
+
+    /**
+     * Keeps the first modification of each Danish day made no earlier than the configured default
+     * window, less its slack: the daily batch, rather than a correction earlier or later that
+     * day. The bound is fixed rather than learnt, so a publication that moves earlier is still
+     * seen and the window follows it.
+     */
+    public synchronized void observe(Instant lastModified) {
+        if (lastModified.atZone(PriceColumns.DK).toLocalTime().isBefore(earliest)) {
+            return;
+        }
+        record(lastModified);
+    }
+
+    /**
+     * Records today's batch as seen at {@code at}, whatever the {@code Last-Modified} said; for
+     * when hours of the next Danish day have been ingested.
+     */
+    public synchronized void published(Instant at) {
+        record(at);
+    }
+
+    private void record(Instant published) {
+        if (!publications.isEmpty() && !day(published).isAfter(day(publications.peekLast()))) {
+            return;
+        }
+        publications.addLast(published);
+        while (publications.size() > history) {
+            publications.removeFirst();
+        }
+    }
+
+    public synchronized boolean isDue(Instant now) {
+        return !now.isBefore(nextPoll);
+    }
+
+    /**
+     * Schedules the poll after one that has just finished.
+     */
+    public synchronized void polled(Instant now) {
+        nextPoll = now.plus(nextDelay(now));
+    }
+
+    public synchronized Instant nextPoll() {
+        return nextPoll;
+    }
+
+    /**
+     * The time of day upstream publishes at, in Danish time, widened by the margin.
+     */
+    public synchronized LocalTime[] window() {
+        if (publications.size() < MIN_SAMPLES) {
+            return new LocalTime[]{defaultStart, defaultEnd};
+        }
+        int[] minutes = publications.stream()
+                .mapToInt(published -> published.atZone(PriceColumns.DK).toLocalTime().toSecondOfDay() / 60)
+                .sorted()
+                .toArray();
+        // the inner 80% of publications, so one late correction does not widen the window for good
+        int low = minutes[minutes.length / 10];
+        int high = minutes[minutes.length - 1 - minutes.length / 10];
+        return new LocalTime[]{
+                LocalTime.ofSecondOfDay(Math.max(0, low * 60L - margin.toSeconds())),
+                LocalTime.ofSecondOfDay(Math.min(24 * 3600 - 1, high * 60L + margin.toSeconds()))};
+    }
+
+    Duration nextDelay(Instant now) {
+        if (!adaptive) {
+            return interval;
+        }
+        LocalTime[] window = window();
+        ZonedDateTime local = now.atZone(PriceColumns.DK);
+        LocalDate today = local.toLocalDate();
+        ZonedDateTime start = today.atTime(window[0]).atZone(PriceColumns.DK);
+        ZonedDateTime end = today.atTime(window[1]).atZone(PriceColumns.DK);
+        boolean publishedToday = !publications.isEmpty() && day(publications.peekLast()).equals(today);
+        if (!local.isBefore(start) && local.isBefore(end) && !publishedToday) {
+            return fastInterval;
+        }
+        ZonedDateTime nextStart = local.isBefore(start) ? start : start.plusDays(1);
+        Duration untilWindow = Duration.between(local, nextStart);
+        return untilWindow.compareTo(slowInterval) < 0 ? untilWindow : slowInterval;
+    }
+
+    private static LocalDate day(Instant instant) {
+        return instant.atZone(PriceColumns.DK).toLocalDate();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PublicationSchedule" + Arrays.toString(window()) + " next " + nextPoll;
+    }
+}
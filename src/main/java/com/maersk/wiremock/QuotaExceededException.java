@@ -0,0 +1,20 @@
+package com.maersk.wiremock;
+
+import java.time.Duration;
+
+public class QuotaExceededException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public QuotaExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * How long until the quota has refilled enough for the call to be let through.
+     */
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+}
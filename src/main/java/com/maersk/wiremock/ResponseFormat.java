@@ -0,0 +1,113 @@
+package com.maersk.wiremock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Representations {@code /data} can be served in. JSON mirrors upstream and stays the default;
+ * the binary formats carry prices as numbers, and the compact one areas as table indexes too.
+ */
+public enum ResponseFormat {
+
+    JSON(MediaType.APPLICATION_JSON, new JsonFactory()),
+    CBOR(MediaType.parseMediaType("application/cbor"), new CBORFactory()),
+    SMILE(MediaType.parseMediaType("application/x-jackson-smile"), new SmileFactory()),
+    COMPACT(MediaType.parseMediaType("application/x-energy-prices"), null);
+
+    private final MediaType mediaType;
+    private final JsonFactory factory;
+
+    ResponseFormat(MediaType mediaType, JsonFactory factory) {
+        this.mediaType = mediaType;
+        this.factory = factory;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * The most preferred format the client accepts, JSON if none is named explicitly.
+     */
+    public static ResponseFormat negotiate(List<MediaType> accept) {
+        var sorted = new ArrayList<>(accept);
+        MediaType.sortBySpecificityAndQuality(sorted);
+        for (MediaType acceptable : sorted) {
+            if (acceptable.isWildcardType()) {
+                return JSON;
+            }
+            for (ResponseFormat format : values()) {
+                if (acceptable.includes(format.mediaType)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * Encodes the {@code fields} of {@code records} in this format. JSON keeps upstream's form,
+     * prices as strings and missing values as nulls; the binary formats leave them out.
+     */
+    byte[] encode(List<EnergyDataRecord> records, PriceFields fields) {
+        if (this == COMPACT) {
+            return CompactPriceFormat.encode(fields.isAll() ? records : records.stream().map(fields::project).collect(Collectors.toList()));
+        }
+        var out = new ByteArrayOutputStream(records.size() * 64);
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("records");
+            for (EnergyDataRecord record : records) {
+                generator.writeStartObject();
+                if (fields.includes(PriceFields.HOUR_UTC)) {
+                    writeString(generator, "HourUTC", record.HourUTC);
+                }
+                if (fields.includes(PriceFields.HOUR_DK)) {
+                    writeString(generator, "HourDK", record.HourDK);
+                }
+                if (fields.includes(PriceFields.PRICE_AREA)) {
+                    writeString(generator, "PriceArea", record.PriceArea);
+                }
+                if (fields.includes(PriceFields.SPOT_PRICE_DKK)) {
+                    writePrice(generator, "SpotPriceDKK", record.SpotPriceDKK);
+                }
+                if (fields.includes(PriceFields.SPOT_PRICE_EUR)) {
+                    writePrice(generator, "SpotPriceEUR", record.SpotPriceEUR);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private void writeString(JsonGenerator generator, String name, String value) throws IOException {
+        if (value != null || this == JSON) {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    private void writePrice(JsonGenerator generator, String name, String value) throws IOException {
+        if (this == JSON) {
+            generator.writeStringField(name, value);
+            return;
+        }
+        long price = PriceColumns.parsePrice(value);
+        if (price != PriceColumns.NO_PRICE) {
+            generator.writeNumberField(name, price / (double) FixedPoint.ONE);
+        }
+    }
+}
@@ -1,9 +1,25 @@
 package com.maersk.wiremock;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeoutException;
 
 import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
@@ -11,9 +27,227 @@ import static org.springframework.web.reactive.function.server.RouterFunctions.r
 @Configuration
 public class Router {
 
+    private final int exportPageSize;
+    private final int exportMaxPageSize;
+    private final Duration deadline;
+    private final int maxRows;
+    private final PriceStore priceStore;
+    private final EncodedResponses encodedResponses;
+    private final EnergyMetrics metrics;
+
+    public Router(@Value("${energy.export.page-size:1000}") int exportPageSize,
+                  @Value("${energy.export.max-page-size:10000}") int exportMaxPageSize,
+                  @Value("${energy.request.deadline:PT5S}") Duration deadline,
+                  @Value("${energy.query.max-rows:10000}") int maxRows,
+                  PriceStore priceStore,
+                  EncodedResponses encodedResponses,
+                  EnergyMetrics metrics) {
+        this.exportPageSize = exportPageSize;
+        this.exportMaxPageSize = exportMaxPageSize;
+        this.deadline = deadline;
+        this.maxRows = maxRows;
+        this.priceStore = priceStore;
+        this.encodedResponses = encodedResponses;
+        this.metrics = metrics;
+    }
+
+    /**
+     * The latest prices, or the rows a {@link PriceQuery} selects: answered from the store when it
+     * holds every row of a closed range, and by upstream otherwise. A filtered query without a
+     * {@code limit} may match at most {@code energy.query.max-rows} rows.
+     */
     @Bean
     public RouterFunction<ServerResponse> data(EnergyApi energyApi) {
-        return route(GET("/data"), (request -> energyApi.fecthEnergyData()
-                .flatMap(data -> ServerResponse.ok().bodyValue(data))));
+        return route(GET("/data"), (request -> {
+            PriceQuery query;
+            try {
+                query = PriceQuery.of(request.queryParams());
+            } catch (IllegalArgumentException e) {
+                return ServerResponse.badRequest().bodyValue(e.getMessage());
+            }
+            if (query.limit > maxRows) {
+                return ServerResponse.badRequest().bodyValue("Invalid limit " + query.limit + ", at most " + maxRows);
+            }
+            if (query.isFiltered() && priceStore.covers(query.areaCodes(), query.fromHour(), query.toHour())) {
+                if (query.limit == 0 && priceStore.count(query.areaCodes(), query.fromHour(), query.toHour()) > maxRows) {
+                    return tooManyRows();
+                }
+                var encoded = encodedResponses.encode(request.uri().getRawQuery(), priceStore.version(), query.fields, () -> {
+                    var data = new EnergyData();
+                    data.records = sortAndLimit(priceStore.query(query.areaCodes(), query.fromHour(), query.toHour()), query);
+                    return data;
+                });
+                return respond(request, encoded);
+            }
+            // not held locally: push the filter down so upstream only sends the rows and columns asked for
+            var fetched = query.isFiltered() ? energyApi.fecthEnergyData(EnergyQuery.of(query, maxRows)) : energyApi.fecthEnergyData();
+            return fetched
+                    .contextWrite(Deadline.in(deadline))
+                    .flatMap(data -> query.isFiltered() && query.limit == 0 && data.records.size() > maxRows
+                            ? tooManyRows()
+                            : respond(request, encodedResponses.encode(data, query.fields)))
+                    .onErrorResume(Router::unavailable);
+        }));
+    }
+
+    /**
+     * The answer when upstream gave no data and nothing stale could stand in: 503 with a
+     * {@code Retry-After} when the quota shed the call, 504 past the deadline, 502 otherwise.
+     */
+    private static Mono<ServerResponse> unavailable(Throwable e) {
+        if (e instanceof QuotaExceededException) {
+            long seconds = Math.max(1, (((QuotaExceededException) e).retryAfter().toMillis() + 999) / 1000);
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(seconds))
+                    .bodyValue("No price data available: " + e.getMessage());
+        }
+        return ServerResponse.status(e instanceof TimeoutException ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.BAD_GATEWAY)
+                .bodyValue("No price data available: " + e.getMessage());
+    }
+
+    private Mono<ServerResponse> tooManyRows() {
+        return ServerResponse.badRequest().bodyValue("More than " + maxRows + " rows match, narrow the range or pass a limit");
+    }
+
+    /**
+     * Writes a pre-serialized body in the negotiated format, gzipped when it is JSON and the
+     * client accepts it, or {@code 304 Not Modified} when the client already holds that variant.
+     */
+    private Mono<ServerResponse> respond(ServerRequest request, EncodedResponses.Encoded encoded) {
+        var format = ResponseFormat.negotiate(request.headers().accept());
+        boolean gzip = format == ResponseFormat.JSON && encoded.gzipped() != null && acceptsGzip(request);
+        String etag = gzip ? encoded.gzippedEtag() : encoded.etag(format);
+        return request.checkNotModified(etag)
+                .switchIfEmpty(Mono.defer(() -> {
+                    var response = ServerResponse.ok()
+                            .contentType(format.mediaType())
+                            .eTag(etag)
+                            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+                    byte[] body = gzip ? encoded.gzipped() : encoded.bytes(format);
+                    metrics.responded(format, body.length);
+                    if (gzip) {
+                        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").bodyValue(body);
+                    }
+                    return response.bodyValue(body);
+                }));
+    }
+
+    /**
+     * Orders the rows as upstream would, oldest first unless {@code sort=desc}, so a limit keeps
+     * the same rows whichever path answers.
+     */
+    private static List<EnergyDataRecord> sortAndLimit(List<EnergyDataRecord> records, PriceQuery query) {
+        Comparator<EnergyDataRecord> byHour = Comparator.comparing(record -> record.HourUTC);
+        records.sort("desc".equals(query.sort) ? byHour.reversed() : byHour);
+        return query.limit > 0 && records.size() > query.limit ? records.subList(0, query.limit) : records;
+    }
+
+    private static byte[] allAreas() {
+        byte[] areas = new byte[PriceAreas.count()];
+        for (int i = 0; i < areas.length; i++) {
+            areas[i] = (byte) i;
+        }
+        return areas;
+    }
+
+    private static int pageSize(String value) {
+        try {
+            int pageSize = Integer.parseInt(value.trim());
+            if (pageSize > 0) {
+                return pageSize;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid pageSize '" + value + "'");
+    }
+
+    static boolean acceptsGzip(ServerRequest request) {
+        for (String header : request.headers().header(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : header.split(",")) {
+                String[] parts = coding.split(";");
+                String name = parts[0].trim();
+                if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                    return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Daily or monthly price statistics: {@code area} as for {@code /data},
+     * {@code granularity=day|month} and {@code from}/{@code to} as Danish calendar dates, by
+     * default every area and everything held.
+     */
+    @Bean
+    public RouterFunction<ServerResponse> rollups(PriceRollups rollups) {
+        return route(GET("/data/rollups"), request -> {
+            List<PriceRollup> result = new ArrayList<>();
+            try {
+                var granularity = PriceRollups.Granularity.valueOf(
+                        request.queryParam("granularity").orElse("day").toUpperCase(Locale.ROOT));
+                var query = PriceQuery.of(request.queryParams());
+                byte[] areas = query.areas.isEmpty() ? allAreas() : query.areaCodes();
+                for (byte area : areas) {
+                    LocalDate[] span = rollups.span(area);
+                    if (span == null) {
+                        continue;
+                    }
+                    // clamped to the days held, so a wide range costs no more than everything held
+                    var from = request.queryParam("from").map(LocalDate::parse).filter(span[0]::isBefore).orElse(span[0]);
+                    var end = span[1].plusDays(1);
+                    var to = request.queryParam("to").map(LocalDate::parse).filter(end::isAfter).orElse(end);
+                    if (from.isBefore(to)) {
+                        result.addAll(rollups.query(area, granularity, from, to));
+                    }
+                }
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                return ServerResponse.badRequest().bodyValue(e.getMessage());
+            }
+            return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(result);
+        });
+    }
+
+    /**
+     * Server-sent events with the rows of each ingest as it happens, optionally filtered by
+     * {@code area} as for {@code /data}.
+     */
+    @Bean
+    public RouterFunction<ServerResponse> live(LivePrices livePrices) {
+        return route(GET("/data/live"), request -> {
+            PriceQuery query;
+            try {
+                query = PriceQuery.of(request.queryParams());
+            } catch (IllegalArgumentException e) {
+                return ServerResponse.badRequest().bodyValue(e.getMessage());
+            }
+            return ServerResponse.ok()
+                    .contentType(MediaType.TEXT_EVENT_STREAM)
+                    .body(BodyInserters.fromServerSentEvents(livePrices.subscribe(query.areaCodes())));
+        });
+    }
+
+    /**
+     * Every row upstream holds, streamed page by page; {@code pageSize} is capped at
+     * {@code energy.export.max-page-size}.
+     */
+    @Bean
+    public RouterFunction<ServerResponse> export(EnergyApi energyApi) {
+        return route(GET("/data/export"), request -> {
+            int pageSize;
+            try {
+                pageSize = request.queryParam("pageSize").map(Router::pageSize).orElse(exportPageSize);
+            } catch (IllegalArgumentException e) {
+                return ServerResponse.badRequest().bodyValue(e.getMessage());
+            }
+            pageSize = Math.min(pageSize, exportMaxPageSize);
+            var contentType = request.headers().accept().contains(MediaType.TEXT_EVENT_STREAM)
+                    ? MediaType.TEXT_EVENT_STREAM
+                    : MediaType.APPLICATION_NDJSON;
+            return ServerResponse.ok()
+                    .contentType(contentType)
+                    .body(energyApi.streamEnergyData(pageSize), EnergyDataRecord.class);
+        });
     }
 }
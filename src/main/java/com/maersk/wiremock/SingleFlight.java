@@ -0,0 +1,46 @@
+package com.maersk.wiremock;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: while a call is in flight every further
+ * subscriber for that key joins it and receives the same result.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Mono<V>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            AtomicReference<Mono<V>> self = new AtomicReference<>();
+            // leave the map before the result reaches subscribers, so a call made right after
+            // this one completes starts a new flight instead of joining a finished one
+            Mono<V> flight = Mono.defer(call)
+                    .doOnTerminate(() -> flights.remove(key, self.get()))
+                    .doFinally(signal -> flights.remove(key, self.get()))
+                    .cache();
+            self.set(flight);
+            Mono<V> existing = flights.putIfAbsent(key, flight);
+            if (existing != null) {
+                coalesced.incrementAndGet();
+                return existing;
+            }
+            return flight;
+        });
+    }
+
+    public int inFlight() {
+        return flights.size();
+    }
+
+    public long coalesced() {
+        return coalesced.get();
+    }
+}
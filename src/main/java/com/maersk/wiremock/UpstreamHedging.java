@@ -0,0 +1,65 @@
+package com.maersk.wiremock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Decides when a slow upstream call gets a second, hedged attempt: once it has been running for
+ * longer than the configured percentile of recent upstream latencies. Until enough latencies
+ * have been seen the initial delay is used.
+ */
+@Component
+public class UpstreamHedging {
+
+    private static final int SAMPLES = 128;
+    private static final int MIN_SAMPLES = 16;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final Duration initialDelay;
+    private final Duration minDelay;
+
+    private final long[] latencies = new long[SAMPLES];
+    private int count;
+    private int next;
+
+    public UpstreamHedging(@Value("${energy.hedge.enabled:true}") boolean enabled,
+                           @Value("${energy.hedge.percentile:0.95}") double percentile,
+                           @Value("${energy.hedge.initial-delay:PT1S}") Duration initialDelay,
+                           @Value("${energy.hedge.min-delay:PT0.1S}") Duration minDelay) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.initialDelay = initialDelay;
+        this.minDelay = minDelay;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void record(Duration latency) {
+        latencies[next] = latency.toNanos();
+        next = (next + 1) % SAMPLES;
+        count = Math.min(count + 1, SAMPLES);
+    }
+
+    /**
+     * How long to wait on the first attempt before hedging it.
+     */
+    public Duration delay() {
+        long[] sorted;
+        synchronized (this) {
+            if (count < MIN_SAMPLES) {
+                return initialDelay;
+            }
+            sorted = Arrays.copyOf(latencies, count);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+        long threshold = sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+        return Duration.ofNanos(Math.max(threshold, minDelay.toNanos()));
+    }
+}
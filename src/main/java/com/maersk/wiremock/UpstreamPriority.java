@@ -0,0 +1,20 @@
+package com.maersk.wiremock;
+
+/**
+ * Order in which queued upstream calls are granted quota, most urgent first.
+ */
+public enum UpstreamPriority {
+
+    FOREGROUND,
+    // a client is reading the response, page after page
+    EXPORT,
+    SYNC,
+    BACKFILL;
+
+    /**
+     * Whether no client waits on the call, so it can be shed when quota runs low.
+     */
+    public boolean isBackground() {
+        return this == SYNC || this == BACKFILL;
+    }
+}
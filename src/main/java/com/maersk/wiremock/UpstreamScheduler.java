@@ -0,0 +1,230 @@
+package com.maersk.wiremock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gates every upstream call behind a token bucket sized from the {@code TotalCalls} and
+ * {@code RemainingCalls} headers upstream returns. Calls waiting for a token are granted in
+ * {@link UpstreamPriority} order. Once the bucket drops below the reserve, background calls
+ * are shed straight away, and calls a client waits on that cannot get a token within the maximum wait
+ * fail with {@link QuotaExceededException} so the caller can fall back to stale data.
+ */
+@Component
+public class UpstreamScheduler {
+
+    static final String REMAINING_CALLS = "RemainingCalls";
+    static final String TOTAL_CALLS = "TotalCalls";
+
+    private final Duration window;
+    private final double reserve;
+    private final long maxWaitNanos;
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>(
+            Comparator.<Task, UpstreamPriority>comparing(task -> task.priority).thenComparingLong(task -> task.sequence));
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<UpstreamPriority, Timer> waitTimers = new EnumMap<>(UpstreamPriority.class);
+    private final Map<UpstreamPriority, Counter> shedCounters = new EnumMap<>(UpstreamPriority.class);
+
+    private double capacity;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private boolean drainScheduled;
+
+    public UpstreamScheduler(@Value("${energy.quota.calls-per-window:50}") int callsPerWindow,
+                             @Value("${energy.quota.window:PT1M}") Duration window,
+                             @Value("${energy.quota.reserve:0.2}") double reserve,
+                             @Value("${energy.quota.max-wait:PT10S}") Duration maxWait,
+                             MeterRegistry registry) {
+        this.capacity = callsPerWindow;
+        this.tokens = callsPerWindow;
+        this.window = window;
+        this.reserve = reserve;
+        this.maxWaitNanos = maxWait.toNanos();
+        for (UpstreamPriority priority : UpstreamPriority.values()) {
+            waitTimers.put(priority, Timer.builder("energy.upstream.queue.wait")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(registry));
+            shedCounters.put(priority, Counter.builder("energy.upstream.shed")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(registry));
+        }
+        Gauge.builder("energy.upstream.queue.depth", this, UpstreamScheduler::queueDepth).register(registry);
+        Gauge.builder("energy.upstream.quota.tokens", this, UpstreamScheduler::tokens).register(registry);
+    }
+
+    /**
+     * Completes once a token has been granted to a call of the given priority.
+     */
+    public Mono<Void> acquire(UpstreamPriority priority) {
+        return Mono.create(sink -> {
+            var task = new Task(priority, sequence.incrementAndGet(), sink);
+            synchronized (this) {
+                refill();
+                if (priority.isBackground() && tokens < capacity * reserve) {
+                    shedCounters.get(priority).increment();
+                    sink.error(new QuotaExceededException("Upstream quota low, shedding " + priority + " call", refillTime(capacity * reserve)));
+                    return;
+                }
+                queue.add(task);
+            }
+            sink.onCancel(() -> {
+                synchronized (this) {
+                    queue.remove(task);
+                }
+            });
+            drain();
+        });
+    }
+
+    /**
+     * Takes a token for an optional call, such as a hedged attempt, only if one is available
+     * right now without cutting into the reserve or jumping ahead of waiting calls.
+     */
+    public boolean tryAcquire(UpstreamPriority priority) {
+        synchronized (this) {
+            refill();
+            if (queue.isEmpty() && tokens >= Math.max(1, capacity * reserve)) {
+                tokens -= 1;
+                return true;
+            }
+        }
+        shedCounters.get(priority).increment();
+        return false;
+    }
+
+    /**
+     * Aligns the bucket with the quota upstream reports on a response.
+     */
+    public void observe(HttpHeaders headers) {
+        Integer remaining = intHeader(headers, REMAINING_CALLS);
+        Integer total = intHeader(headers, TOTAL_CALLS);
+        synchronized (this) {
+            refill();
+            if (total != null && total > 0) {
+                capacity = total;
+            }
+            if (remaining != null) {
+                tokens = Math.min(tokens, remaining);
+            }
+        }
+    }
+
+    public synchronized int queueDepth() {
+        return queue.size();
+    }
+
+    public synchronized double tokens() {
+        refill();
+        return tokens;
+    }
+
+    private void drain() {
+        while (true) {
+            Task task;
+            List<Task> expired = new ArrayList<>();
+            Duration retryAfter;
+            synchronized (this) {
+                refill();
+                long now = System.nanoTime();
+                queue.removeIf(waiting -> now - waiting.enqueuedAt >= maxWaitNanos && expired.add(waiting));
+                retryAfter = refillTime(1);
+                if (queue.isEmpty()) {
+                    task = null;
+                } else if (tokens < 1) {
+                    task = null;
+                    scheduleDrain();
+                } else {
+                    task = queue.poll();
+                    tokens -= 1;
+                }
+            }
+            for (Task waiting : expired) {
+                shedCounters.get(waiting.priority).increment();
+                waiting.sink.error(new QuotaExceededException("No upstream quota within " + Duration.ofNanos(maxWaitNanos), retryAfter));
+            }
+            if (task == null) {
+                return;
+            }
+            task.start(waitTimers.get(task.priority));
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        double perToken = window.toNanos() / capacity;
+        long delay = (long) Math.min((1 - tokens) * perToken, maxWaitNanos);
+        Schedulers.parallel().schedule(() -> {
+            synchronized (this) {
+                drainScheduled = false;
+            }
+            drain();
+        }, Math.max(delay, 1), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The time until the bucket holds {@code level} tokens, were nothing else to take any.
+     */
+    private Duration refillTime(double level) {
+        double perToken = window.toNanos() / capacity;
+        return Duration.ofNanos(Math.max((long) ((level - tokens) * perToken), 1_000_000));
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * capacity / window.toNanos());
+        refilledAt = now;
+    }
+
+    private static Integer intHeader(HttpHeaders headers, String name) {
+        String value = headers.getFirst(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Task {
+
+        final UpstreamPriority priority;
+        final long sequence;
+        final long enqueuedAt = System.nanoTime();
+        final MonoSink<Void> sink;
+
+        Task(UpstreamPriority priority, long sequence, MonoSink<Void> sink) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.sink = sink;
+        }
+
+        void start(Timer waitTimer) {
+            waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            sink.success();
+        }
+    }
+}
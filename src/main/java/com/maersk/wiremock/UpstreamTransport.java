@@ -0,0 +1,105 @@
+package com.maersk.wiremock;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorResourceFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+
+/**
+ * The reactor-netty client upstream calls go through. Connections are pooled with a fixed size
+ * and evicted once idle or old, so a connection the server or a load balancer has already
+ * dropped is not reused; calls beyond the pool size wait for a connection rather than fail, up
+ * to {@code pending-acquire-max-count} of them. With HTTP/2 enabled concurrent calls are
+ * multiplexed over one connection, negotiated with ALPN over TLS or by upgrade over plain HTTP,
+ * falling back to HTTP/1.1. Calls run on the server's event loops unless
+ * {@code share-event-loops} is off, in which case the client starts its own set of threads.
+ */
+@Component
+public class UpstreamTransport implements DisposableBean {
+
+    static final String POOL_NAME = "energy-upstream";
+
+    private final ConnectionProvider provider;
+    // null to run on the global event loops the server also uses
+    @Nullable
+    private final LoopResources loops;
+    private final boolean ownsLoops;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final boolean http2;
+
+    public UpstreamTransport(@Value("${energy.upstream.pool.max-connections:16}") int maxConnections,
+                             @Value("${energy.upstream.pool.pending-acquire-max-count:256}") int pendingAcquireMaxCount,
+                             @Value("${energy.upstream.pool.pending-acquire-timeout:PT10S}") Duration pendingAcquireTimeout,
+                             @Value("${energy.upstream.pool.max-idle-time:PT30S}") Duration maxIdleTime,
+                             @Value("${energy.upstream.pool.max-life-time:PT5M}") Duration maxLifeTime,
+                             @Value("${energy.upstream.pool.evict-interval:PT30S}") Duration evictInterval,
+                             @Value("${energy.upstream.connect-timeout:PT2S}") Duration connectTimeout,
+                             @Value("${energy.upstream.read-timeout:PT10S}") Duration readTimeout,
+                             @Value("${energy.upstream.http2:false}") boolean http2,
+                             @Value("${energy.upstream.share-event-loops:true}") boolean shareEventLoops,
+                             @Nullable ReactorResourceFactory resources) {
+        this.provider = ConnectionProvider.builder(POOL_NAME)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                .lifo()
+                .metrics(true)
+                .build();
+        if (shareEventLoops) {
+            this.loops = resources != null ? resources.getLoopResources() : null;
+        } else {
+            this.loops = LoopResources.create(POOL_NAME);
+        }
+        this.ownsLoops = !shareEventLoops;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.http2 = http2;
+    }
+
+    /**
+     * A client for {@code baseUrl} publishing reactor-netty's connect, response and pool meters.
+     * Requests are tagged by path only, so the query strings of paged and filtered calls do not
+     * each open a new series.
+     */
+    public HttpClient httpClient(String baseUrl) {
+        var client = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(readTimeout)
+                .metrics(true, UpstreamTransport::pathOf);
+        if (loops != null) {
+            client = client.runOn(loops);
+        }
+        if (http2) {
+            client = baseUrl.startsWith("https:")
+                    ? client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                    : client.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+        return client;
+    }
+
+    static String pathOf(String uri) {
+        int query = uri.indexOf('?');
+        return query < 0 ? uri : uri.substring(0, query);
+    }
+
+    @Override
+    public void destroy() {
+        provider.disposeLater().block(Duration.ofSeconds(5));
+        if (ownsLoops) {
+            loops.disposeLater().block(Duration.ofSeconds(5));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.maersk.wiremock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU spent per {@code /data} request on the body: serializing and gzipping on every request,
+ * as response compression in the server would, against looking up the variants
+ * {@link EncodedResponses} produced once for the current data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+	@Param({"100", "10000"})
+	int rows;
+
+	EnergyData data;
+	ObjectMapper objectMapper;
+	EncodedResponses encodedResponses;
+
+	@Setup
+	public void setUp() {
+		data = new EnergyDataDecoder().decodeToEnergyData(SyntheticPages.chunked(SyntheticPages.json(rows), 8192)).block();
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		encodedResponses = new EncodedResponses(objectMapper, 64, true, new EnergyMetrics(new SimpleMeterRegistry()));
+		encodedResponses.encode(data);
+	}
+
+	@Benchmark
+	public byte[] serializePerRequest() throws Exception {
+		return objectMapper.writeValueAsBytes(data);
+	}
+
+	@Benchmark
+	public byte[] gzipPerRequest() throws Exception {
+		return EncodedResponses.gzip(objectMapper.writeValueAsBytes(data));
+	}
+
+	@Benchmark
+	public byte[] precompressed() {
+		return encodedResponses.encode(data).gzipped();
+	}
+}
@@ -0,0 +1,71 @@
+package com.maersk.wiremock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming {@link EnergyDataDecoder} with the buffering
+ * {@code bodyToMono(EnergyData.class)} path on large synthetic pages, both for the full page
+ * and for the time until the first record is available. Run with the {@code benchmark} profile
+ * and {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnergyDataDecoderBenchmark {
+
+	private static final ResolvableType ENERGY_DATA = ResolvableType.forClass(EnergyData.class);
+
+	@Param({"100", "10000", "100000"})
+	int rows;
+
+	byte[] body;
+	EnergyDataDecoder streaming;
+	Jackson2JsonDecoder buffering;
+
+	@Setup
+	public void setUp() {
+		body = SyntheticPages.json(rows);
+		streaming = new EnergyDataDecoder();
+		buffering = new Jackson2JsonDecoder(Jackson2ObjectMapperBuilder.json().build());
+		buffering.setMaxInMemorySize(-1);
+	}
+
+	@Benchmark
+	public Object bufferingFullPage() {
+		return buffering.decodeToMono(SyntheticPages.chunked(body, 8192), ENERGY_DATA, null, Collections.emptyMap()).block();
+	}
+
+	@Benchmark
+	public Object streamingFullPage() {
+		return streaming.decodeToEnergyData(SyntheticPages.chunked(body, 8192)).block();
+	}
+
+	@Benchmark
+	public Object bufferingFirstRecord() {
+		return ((EnergyData) buffering.decodeToMono(SyntheticPages.chunked(body, 8192), ENERGY_DATA, null, Collections.emptyMap()).block()).records.get(0);
+	}
+
+	@Benchmark
+	public Object streamingFirstRecord() {
+		return streaming.decode(SyntheticPages.chunked(body, 8192)).blockFirst();
+	}
+}
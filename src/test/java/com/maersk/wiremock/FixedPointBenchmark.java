@@ -0,0 +1,99 @@
+package com.maersk.wiremock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and formats a page worth of prices with {@link FixedPoint}, {@code BigDecimal} and
+ * {@code Double.parseDouble}. Run with {@code -prof gc}: the fixed-point variants should show
+ * no allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FixedPointBenchmark {
+
+	private static final int PRICES = 1000;
+
+	String[] strings;
+	char[][] chars;
+	long[] micros;
+	byte[] out;
+
+	@Setup
+	public void setUp() {
+		strings = new String[PRICES];
+		chars = new char[PRICES][];
+		micros = new long[PRICES];
+		for (int i = 0; i < PRICES; i++) {
+			long price = (i * 7919L) % 2_000_000_000L - 100_000_000L;
+			strings[i] = BigDecimal.valueOf(price, FixedPoint.SCALE).toPlainString();
+			chars[i] = strings[i].toCharArray();
+			micros[i] = price;
+		}
+		out = new byte[FixedPoint.MAX_LENGTH];
+	}
+
+	@Benchmark
+	public long parseFixedPoint() {
+		long sum = 0;
+		for (char[] price : chars) {
+			sum += FixedPoint.parse(price, 0, price.length);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long parseBigDecimal() {
+		long sum = 0;
+		for (String price : strings) {
+			sum += new BigDecimal(price).movePointRight(FixedPoint.SCALE).longValue();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double parseDouble() {
+		double sum = 0;
+		for (String price : strings) {
+			sum += Double.parseDouble(price);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public void writeFixedPoint(Blackhole blackhole) {
+		for (long price : micros) {
+			blackhole.consume(FixedPoint.write(price, out, 0));
+		}
+	}
+
+	@Benchmark
+	public void writeBigDecimal(Blackhole blackhole) {
+		for (long price : micros) {
+			blackhole.consume(BigDecimal.valueOf(price, FixedPoint.SCALE).toPlainString());
+		}
+	}
+
+	@Benchmark
+	public void writeDouble(Blackhole blackhole) {
+		for (long price : micros) {
+			blackhole.consume(Double.toString(price / 1e6));
+		}
+	}
+}
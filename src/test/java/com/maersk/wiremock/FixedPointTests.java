@@ -0,0 +1,65 @@
+package com.maersk.wiremock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FixedPointTests {
+
+	@Test
+	void testParseMatchesBigDecimal() {
+		for (String price : new String[]{"108.500000", "0.740000", "-12.5", "7", "0.0000001", "1.5E2", "2e-3", "+3.25", "-0.000001"}) {
+			final long expected = new BigDecimal(price).movePointRight(FixedPoint.SCALE).longValue();
+			final byte[] bytes = price.getBytes(StandardCharsets.US_ASCII);
+			assertEquals(expected, FixedPoint.parse(price), price);
+			assertEquals(expected, FixedPoint.parse(price.toCharArray(), 0, price.length()), price);
+			assertEquals(expected, FixedPoint.parse(bytes, 0, bytes.length), price);
+		}
+	}
+
+	@Test
+	void testRejectsMalformedNumbers() {
+		for (String price : new String[]{"", "-", "1.2.3", "12a", "e5", "1e", "99999999999999999999"}) {
+			assertThrows(NumberFormatException.class, () -> FixedPoint.parse(price), price);
+		}
+	}
+
+	@Test
+	void testWriteMatchesBigDecimal() {
+		final byte[] out = new byte[FixedPoint.MAX_LENGTH + 2];
+		for (long micros : new long[]{108_500_000L, 740_000L, -500_000L, 0, 1, Long.MAX_VALUE}) {
+			final int length = FixedPoint.write(micros, out, 2);
+			assertEquals(BigDecimal.valueOf(micros, FixedPoint.SCALE).toPlainString(), new String(out, 2, length, StandardCharsets.US_ASCII));
+			assertEquals(BigDecimal.valueOf(micros, FixedPoint.SCALE).toPlainString(), FixedPoint.toString(micros));
+		}
+	}
+
+	@Test
+	void testDecodeToColumnsReadsPricesWithoutRecords() {
+		final var body = "{\"records\":[" +
+				"{\"HourUTC\":\"2023-05-16T20:00:00\",\"PriceArea\":\"DK1\",\"SpotPriceDKK\":108.5,\"SpotPriceEUR\":\"14.57\"}," +
+				"{\"HourUTC\":null,\"PriceArea\":\"DK2\"}," +
+				"{\"HourUTC\":\"2023-05-16T21:00:00\",\"PriceArea\":\"DK2\",\"SpotPriceDKK\":null}]}";
+		final int[] seen = new int[1];
+		final var batches = new EnergyDataDecoder()
+				.decodeToColumns(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body.getBytes(StandardCharsets.UTF_8))), records -> seen[0] += records)
+				.collectList()
+				.block();
+
+		final var columns = batches.get(0);
+		assertEquals(3, seen[0]);
+		assertEquals(2, columns.size());
+		assertEquals(PriceColumns.epochHour(LocalDateTime.parse("2023-05-16T20:00")), columns.hour(0));
+		assertEquals(PriceAreas.code("DK1"), columns.area(0));
+		assertEquals(108_500_000L, columns.spotPriceDkk(0));
+		assertEquals(14_570_000L, columns.spotPriceEur(0));
+		assertEquals(PriceColumns.NO_PRICE, columns.spotPriceDkk(1));
+	}
+}
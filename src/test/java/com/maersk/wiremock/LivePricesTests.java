@@ -0,0 +1,85 @@
+package com.maersk.wiremock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LivePricesTests {
+
+	@Test
+	void testSubscribersOnlySeeTheirAreas() {
+		final var store = new PriceStore();
+		final var live = new LivePrices(new ObjectMapper(), store, 16, Duration.ofHours(1), new SimpleMeterRegistry());
+
+		StepVerifier.create(live.subscribe(new byte[]{PriceAreas.code("DK2")}))
+				.then(() -> store.ingest(List.of(
+						record("DK1", LocalDateTime.parse("2023-05-16T20:00"), "1"),
+						record("DK2", LocalDateTime.parse("2023-05-16T20:00"), "2"))))
+				.assertNext(event -> {
+					assertEquals(LivePrices.EVENT, event.event());
+					assertTrue(event.data().contains("\"PriceArea\":\"DK2\""));
+					assertTrue(!event.data().contains("DK1"));
+				})
+				.then(() -> assertEquals(1, live.subscribers()))
+				.thenCancel()
+				.verify();
+		assertEquals(0, live.subscribers());
+	}
+
+	@Test
+	void testSlowSubscriberKeepsTheNewestUpdates() {
+		final var store = new PriceStore();
+		final var live = new LivePrices(new ObjectMapper(), store, 2, Duration.ofHours(1), new SimpleMeterRegistry());
+
+		StepVerifier.create(live.subscribe(new byte[0]), 0)
+				.then(() -> {
+					for (int hour = 0; hour < 5; hour++) {
+						store.ingest(List.of(record("DK1", LocalDateTime.parse("2023-05-16T00:00").plusHours(hour), "1")));
+					}
+					flush(live);
+				})
+				.thenRequest(2)
+				.assertNext(event -> assertTrue(event.data().contains("2023-05-16T03:00:00")))
+				.assertNext(event -> assertTrue(event.data().contains("2023-05-16T04:00:00")))
+				.thenCancel()
+				.verify();
+	}
+
+	@Test
+	void testUpdatesArePublishedOutsideTheStoreLock() {
+		final var store = new PriceStore();
+		final var live = new LivePrices(new ObjectMapper(), store, 16, Duration.ofHours(1), new SimpleMeterRegistry());
+
+		StepVerifier.create(live.subscribe(new byte[0]).map(event -> Thread.currentThread().getName()))
+				.then(() -> store.ingest(List.of(record("DK1", LocalDateTime.parse("2023-05-16T20:00"), "1"))))
+				.assertNext(thread -> assertEquals("live-prices", thread))
+				.thenCancel()
+				.verify();
+		live.destroy();
+	}
+
+	private static void flush(LivePrices live) {
+		try {
+			live.flush();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static EnergyDataRecord record(String area, LocalDateTime hourUtc, String spotPriceDkk) {
+		final var record = new EnergyDataRecord();
+		record.HourUTC = hourUtc.toString() + ":00";
+		record.PriceArea = area;
+		record.SpotPriceDKK = spotPriceDkk;
+		record.SpotPriceEUR = spotPriceDkk;
+		return record;
+	}
+}
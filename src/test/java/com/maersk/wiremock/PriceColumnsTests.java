@@ -0,0 +1,63 @@
+package com.maersk.wiremock;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceColumnsTests {
+
+	private static final int ROWS = 100_000;
+
+	@Test
+	void testAppendAndRangeScan() {
+		final var columns = new PriceColumns(4);
+		for (EnergyDataRecord record : records(60)) {
+			columns.append(record);
+		}
+
+		final var from = PriceColumns.epochHour(LocalDateTime.parse("2023-05-16T19:00:00"));
+		final List<EnergyDataRecord> scanned = new ArrayList<>();
+		columns.scan(from, from + 2, (row, hour, area, dkk, eur) -> scanned.add(PriceColumns.toRecord(hour, area, dkk, eur)));
+
+		assertEquals(60, columns.size());
+		assertEquals(12, scanned.size());
+		assertEquals("2023-05-16T20:00:00", scanned.get(0).HourUTC);
+		assertEquals("2023-05-16T22:00:00", scanned.get(0).HourDK);
+		assertEquals("DK1", scanned.get(0).PriceArea);
+		assertEquals("106.047514", scanned.get(0).SpotPriceDKK);
+	}
+
+	@Test
+	void testColumnsUseFarLessHeapThanRecords() {
+		final var records = records(ROWS);
+		final var columns = new PriceColumns(ROWS);
+		records.forEach(columns::append);
+
+		final long recordBytes = GraphLayout.parseInstance(records).totalSize();
+		final long columnBytes = GraphLayout.parseInstance(columns).totalSize();
+
+		assertTrue(columnBytes * 10 < recordBytes);
+	}
+
+	private static List<EnergyDataRecord> records(int rows) {
+		final var start = LocalDateTime.parse("2023-05-16T21:00:00");
+		final List<EnergyDataRecord> records = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			final var record = new EnergyDataRecord();
+			final var hour = start.minusHours(i / SyntheticPages.AREAS.length);
+			record.HourUTC = hour + ":00";
+			record.HourDK = hour.plusHours(2) + ":00";
+			record.PriceArea = SyntheticPages.AREAS[i % SyntheticPages.AREAS.length];
+			record.SpotPriceDKK = String.format("%d.%06d", 100 + i % 900, i * 7919L % 1_000_000);
+			record.SpotPriceEUR = String.format("%d.%06d", 10 + i % 90, i * 104729L % 1_000_000);
+			records.add(record);
+		}
+		return records;
+	}
+}
@@ -0,0 +1,57 @@
+package com.maersk.wiremock;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PriceRollupsTests {
+
+	@Test
+	void testIngestUpdatesDailyAndMonthlyRollups() throws Exception {
+		final var store = new PriceStore();
+		final var rollups = new PriceRollups(store, new PriceSnapshot(Path.of("unused"), false, store));
+		final List<EnergyDataRecord> records = new ArrayList<>();
+		// 2023-05-15T22:00Z is midnight in Copenhagen
+		for (int hour = 0; hour < 48; hour++) {
+			records.add(record(LocalDateTime.parse("2023-05-15T22:00").plusHours(hour), String.valueOf(hour)));
+		}
+		store.ingest(records);
+		rollups.flush();
+
+		final var days = rollups.query(PriceAreas.code("DK1"), PriceRollups.Granularity.DAY, LocalDate.parse("2023-05-16"), LocalDate.parse("2023-05-18"));
+		assertEquals(2, days.size());
+		assertEquals("2023-05-16", days.get(0).Period);
+		assertEquals(24, days.get(0).Hours);
+		assertEquals("0.000000", days.get(0).MinDKK);
+		assertEquals("23.000000", days.get(0).MaxDKK);
+		assertEquals("11.500000", days.get(0).AvgDKK);
+		assertEquals("35.500000", days.get(1).AvgDKK);
+
+		store.ingest(List.of(record(LocalDateTime.parse("2023-05-16T12:00"), "-5")));
+		rollups.flush();
+		final var month = rollups.query(PriceAreas.code("DK1"), PriceRollups.Granularity.MONTH, LocalDate.parse("2023-05-01"), LocalDate.parse("2023-06-01"));
+		assertEquals(1, month.size());
+		assertEquals("2023-05", month.get(0).Period);
+		assertEquals(48, month.get(0).Hours);
+		assertEquals("-5.000000", month.get(0).MinDKK);
+		assertEquals("47.000000", month.get(0).MaxDKK);
+
+		rollups.rebuild();
+		assertEquals(month.get(0).AvgDKK, rollups.query(PriceAreas.code("DK1"), PriceRollups.Granularity.MONTH,
+				LocalDate.parse("2023-05-01"), LocalDate.parse("2023-06-01")).get(0).AvgDKK);
+	}
+
+	private static EnergyDataRecord record(LocalDateTime hourUtc, String spotPriceDkk) {
+		final var record = new EnergyDataRecord();
+		record.HourUTC = hourUtc.toString() + ":00";
+		record.PriceArea = "DK1";
+		record.SpotPriceDKK = spotPriceDkk;
+		return record;
+	}
+}
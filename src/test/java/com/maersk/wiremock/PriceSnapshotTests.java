@@ -0,0 +1,93 @@
+package com.maersk.wiremock;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PriceSnapshotTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void testReopenRestoresIngestedRows() throws Exception {
+		final var file = dir.resolve("prices.snapshot");
+		final var snapshot = new PriceSnapshot(file, true, new PriceStore());
+		final var store = new PriceStore();
+		store.addListener(snapshot);
+		store.ingest(List.of(record("2023-05-16T20:00:00", "DK1", "1.5"), record("2023-05-16T21:00:00", "DK1", "2.5")));
+		store.ingest(List.of(record("2023-05-16T21:00:00", "DK1", "3.5"), record("2023-05-16T21:00:00", "SE4", "4.5")));
+		snapshot.destroy();
+
+		final var restored = new PriceStore();
+		final var reopened = new PriceSnapshot(file, true, restored);
+		reopened.destroy();
+
+		final var rows = restored.query(new byte[0], Integer.MIN_VALUE, Integer.MAX_VALUE);
+		assertEquals(3, rows.size());
+		assertEquals("3.500000", rows.get(1).SpotPriceDKK);
+		assertEquals(PriceColumns.epochHour(LocalDateTime.parse("2023-05-16T21:00")), reopened.loadedWatermarks().get("SE4"));
+	}
+
+	@Test
+	void testTornWriteIsDetectedAndTruncated() throws Exception {
+		final var file = dir.resolve("prices.snapshot");
+		final var snapshot = new PriceSnapshot(file, true, new PriceStore());
+		final var store = new PriceStore();
+		store.addListener(snapshot);
+		store.ingest(List.of(record("2023-05-16T20:00:00", "DK1", "1.5")));
+		store.ingest(List.of(record("2023-05-16T21:00:00", "DK1", "2.5"), record("2023-05-16T22:00:00", "DK1", "3.5")));
+		snapshot.destroy();
+		final long goodLength = PriceSnapshot.HEADER_SIZE + PriceSnapshot.BLOCK_HEADER_SIZE + PriceSnapshot.ROW_SIZE;
+		try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(Files.size(file) - 5);
+		}
+
+		final var restored = new PriceStore();
+		final var reopened = new PriceSnapshot(file, true, restored);
+		assertEquals(1, restored.size());
+		assertEquals(goodLength, Files.size(file));
+
+		restored.ingest(List.of(record("2023-05-16T23:00:00", "DK1", "4.5")));
+		reopened.destroy();
+		assertEquals(goodLength + PriceSnapshot.BLOCK_HEADER_SIZE + PriceSnapshot.ROW_SIZE, Files.size(file));
+		final var again = new PriceStore();
+		new PriceSnapshot(file, true, again).destroy();
+		assertEquals(2, again.size());
+	}
+
+	@Test
+	void testConcurrentIngestsReplayInTheOrderApplied() throws Exception {
+		final var file = dir.resolve("prices.snapshot");
+		final var snapshot = new PriceSnapshot(file, true, new PriceStore());
+		final var store = new PriceStore();
+		store.addListener(snapshot);
+		IntStream.range(0, 2000).parallel()
+				.forEach(i -> store.ingest(List.of(record("2023-05-16T20:00:00", "DK1", i + ".5"))));
+		snapshot.destroy();
+		final var held = store.query(new byte[0], Integer.MIN_VALUE, Integer.MAX_VALUE).get(0).SpotPriceDKK;
+
+		final var restored = new PriceStore();
+		new PriceSnapshot(file, true, restored).destroy();
+
+		assertEquals(held, restored.query(new byte[0], Integer.MIN_VALUE, Integer.MAX_VALUE).get(0).SpotPriceDKK);
+	}
+
+	private static EnergyDataRecord record(String hourUtc, String area, String spotPriceDkk) {
+		final var record = new EnergyDataRecord();
+		record.HourUTC = hourUtc;
+		record.PriceArea = area;
+		record.SpotPriceDKK = spotPriceDkk;
+		record.SpotPriceEUR = spotPriceDkk;
+		return record;
+	}
+}
@@ -0,0 +1,97 @@
+package com.maersk.wiremock;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublicationScheduleTests {
+
+	@Test
+	void testWindowIsLearntFromLastModified() {
+		final var schedule = schedule(true);
+		assertEquals(LocalTime.of(12, 0), schedule.window()[0]);
+
+		for (int day = 1; day <= 10; day++) {
+			schedule.observe(dk(day, 13, 5));
+			// a correction later the same day is not a publication
+			schedule.observe(dk(day, 18, 30));
+		}
+		// one late publication is trimmed away
+		schedule.observe(dk(11, 16, 40));
+
+		assertEquals(LocalTime.of(12, 45), schedule.window()[0]);
+		assertEquals(LocalTime.of(13, 25), schedule.window()[1]);
+	}
+
+	@Test
+	void testPollsOftenOnlyUntilTodaysPublication() {
+		final var schedule = schedule(true);
+		for (int day = 1; day <= 10; day++) {
+			schedule.observe(dk(day, 13, 0));
+		}
+
+		assertEquals(Duration.ofHours(2), schedule.nextDelay(dk(11, 3, 0)));
+		assertEquals(Duration.ofMinutes(40), schedule.nextDelay(dk(11, 12, 0)));
+		assertEquals(Duration.ofMinutes(2), schedule.nextDelay(dk(11, 12, 50)));
+
+		schedule.observe(dk(11, 12, 58));
+		assertEquals(Duration.ofHours(2), schedule.nextDelay(dk(11, 13, 0)));
+
+		schedule.polled(dk(11, 13, 0));
+		assertFalse(schedule.isDue(dk(11, 14, 59)));
+		assertTrue(schedule.isDue(dk(11, 15, 0)));
+	}
+
+	@Test
+	void testCorrectionBeforeTheWindowIsNotTodaysPublication() {
+		final var schedule = schedule(true);
+		for (int day = 1; day <= 10; day++) {
+			schedule.observe(dk(day, 13, 0));
+		}
+
+		schedule.observe(dk(11, 8, 15));
+		assertEquals(LocalTime.of(12, 40), schedule.window()[0]);
+		assertEquals(Duration.ofMinutes(2), schedule.nextDelay(dk(11, 12, 50)));
+
+		// hours of the next day ingested count whatever Last-Modified said
+		schedule.published(dk(11, 12, 52));
+		assertEquals(Duration.ofHours(2), schedule.nextDelay(dk(11, 12, 54)));
+	}
+
+	@Test
+	void testWindowFollowsAnEarlierPublication() {
+		final var schedule = schedule(true);
+		for (int day = 1; day <= 10; day++) {
+			schedule.observe(dk(day, 13, 0));
+		}
+		assertEquals(LocalTime.of(12, 40), schedule.window()[0]);
+
+		for (int day = 11; day <= 20; day++) {
+			schedule.observe(dk(day, 11, 30));
+		}
+		assertEquals(LocalTime.of(11, 10), schedule.window()[0]);
+	}
+
+	@Test
+	void testFixedIntervalWhenNotAdaptive() {
+		final var schedule = schedule(false);
+		assertEquals(Duration.ofMinutes(5), schedule.nextDelay(dk(11, 12, 50)));
+	}
+
+	private static PublicationSchedule schedule(boolean adaptive) {
+		return new PublicationSchedule(Duration.ofMinutes(5), adaptive, Duration.ofMinutes(2), Duration.ofHours(2),
+				Duration.ofMinutes(20), "12:00-14:00", 14, Duration.ofHours(3));
+	}
+
+	private static Instant dk(int day, int hour, int minute) {
+		return ZonedDateTime.of(LocalDate.of(2023, 5, day), LocalTime.of(hour, minute), PriceColumns.DK).toInstant();
+	}
+}
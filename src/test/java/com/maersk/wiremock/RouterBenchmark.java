@@ -0,0 +1,99 @@
+package com.maersk.wiremock;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Full {@code /data} round trips through {@link Router#data} with a {@link WebTestClient},
+ * against an in-process WireMock stub serving the recorded fixture: answered from the cache,
+ * fetched from upstream on every request, and served from the local index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouterBenchmark {
+
+	WireMockServer upstream;
+	EnergyDataCache cache;
+	UpstreamTransport transport;
+	WebTestClient client;
+
+	@Setup
+	public void setUp() {
+		// outside Spring Boot logback defaults to DEBUG, and logging every exchange would dominate the score
+		((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+		upstream = new WireMockServer(options().dynamicPort().disableRequestJournal());
+		upstream.start();
+		upstream.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "max-age=3600")
+						.withBody(SyntheticPages.fixture())));
+
+		ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		var metrics = new EnergyMetrics(new SimpleMeterRegistry());
+		var store = new PriceStore();
+		cache = new EnergyDataCache(64);
+		// a quota large enough never to throttle the benchmark
+		var scheduler = new UpstreamScheduler(Integer.MAX_VALUE, Duration.ofSeconds(1), 0.2, Duration.ofSeconds(10), new SimpleMeterRegistry());
+		transport = new UpstreamTransport(16, 256, Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofSeconds(30),
+				Duration.ofSeconds(2), Duration.ofSeconds(10), false, false, null);
+		var energyApi = new EnergyApi("http://localhost:" + upstream.port(), false, false, Duration.ofHours(1), Duration.ofSeconds(10),
+				cache, store, scheduler, new UpstreamHedging(false, 0.95, Duration.ofSeconds(1), Duration.ofMillis(100)), metrics,
+				new PublicationSchedule(Duration.ofMinutes(5), false, Duration.ofMinutes(2), Duration.ofHours(2), Duration.ofMinutes(20), "12:00-14:00", 14, Duration.ofHours(3)), transport);
+		var router = new Router(1000, 10000, Duration.ofSeconds(5), 10000, store, new EncodedResponses(objectMapper, 64, true, metrics), metrics);
+		client = WebTestClient.bindToRouterFunction(router.data(energyApi)).build();
+		cached();
+	}
+
+	@TearDown
+	public void tearDown() {
+		transport.destroy();
+		upstream.stop();
+	}
+
+	@Benchmark
+	public byte[] cached() {
+		return client.get().uri("/data").exchange().expectStatus().isOk().expectBody().returnResult().getResponseBody();
+	}
+
+	@Benchmark
+	public byte[] upstream() {
+		cache.clear();
+		return cached();
+	}
+
+	@Benchmark
+	public byte[] localIndex() {
+		return client.get().uri("/data?area=DK1&from=2023-05-16T06:00&to=2023-05-16T21:00")
+				.exchange().expectStatus().isOk().expectBody().returnResult().getResponseBody();
+	}
+}
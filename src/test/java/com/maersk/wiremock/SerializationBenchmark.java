@@ -0,0 +1,89 @@
+package com.maersk.wiremock;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding an upstream page into {@link EnergyData} and encoding it again as a {@code /data}
+ * body in each {@link ResponseFormat}, for the recorded fixture and for synthetic pages, in full
+ * and projected onto two {@link PriceFields}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+	@Param({"fixture", "1000", "10000"})
+	String page;
+
+	byte[] body;
+	EnergyData data;
+	EnergyDataDecoder decoder;
+	ObjectWriter writer;
+	PriceFields fields;
+	EncodedResponses encodedResponses;
+
+	@Setup
+	public void setUp() {
+		body = page.equals("fixture") ? SyntheticPages.fixture() : SyntheticPages.json(Integer.parseInt(page));
+		decoder = new EnergyDataDecoder();
+		data = decoder.decodeToEnergyData(SyntheticPages.chunked(body, 8192)).block();
+		// the writer EncodedResponses uses for JSON bodies
+		writer = Jackson2ObjectMapperBuilder.json().build().writerFor(EnergyData.class);
+		fields = PriceFields.parse("PriceArea,SpotPriceDKK");
+		encodedResponses = new EncodedResponses(Jackson2ObjectMapperBuilder.json().build(), 64, false, new EnergyMetrics(new SimpleMeterRegistry()));
+	}
+
+	@Benchmark
+	public EnergyData decode() {
+		return decoder.decodeToEnergyData(SyntheticPages.chunked(body, 8192)).block();
+	}
+
+	@Benchmark
+	public EnergyData decodeProjected() {
+		return decoder.decodeToEnergyData(SyntheticPages.chunked(body, 8192), fields).block();
+	}
+
+	@Benchmark
+	public byte[] jsonProjected() {
+		// a fresh Encoded each time, so the projection is written rather than looked up
+		return new EncodedResponses.Encoded(data.records, PriceFields.ALL, null, null, null, 0, encodedResponses).project(fields).bytes();
+	}
+
+	@Benchmark
+	public byte[] json() throws Exception {
+		return writer.writeValueAsBytes(data);
+	}
+
+	@Benchmark
+	public byte[] cbor() {
+		return ResponseFormat.CBOR.encode(data.records, PriceFields.ALL);
+	}
+
+	@Benchmark
+	public byte[] smile() {
+		return ResponseFormat.SMILE.encode(data.records, PriceFields.ALL);
+	}
+
+	@Benchmark
+	public byte[] compact() {
+		return ResponseFormat.COMPACT.encode(data.records, PriceFields.ALL);
+	}
+}
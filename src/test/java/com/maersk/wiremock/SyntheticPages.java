@@ -0,0 +1,65 @@
+package com.maersk.wiremock;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates Elspotprices response bodies shaped like the recorded upstream payload.
+ */
+final class SyntheticPages {
+
+	static final String FIXTURE = "dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json";
+	static final String[] AREAS = {"DK1", "DK2", "NO2", "SE3", "SE4", "SYSTEM"};
+
+	private SyntheticPages() {
+	}
+
+	/**
+	 * The recorded upstream response served by the WireMock stubs.
+	 */
+	static byte[] fixture() {
+		try (InputStream in = SyntheticPages.class.getResourceAsStream("/__files/" + FIXTURE)) {
+			return in.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static byte[] json(int rows) {
+		var start = LocalDateTime.of(2023, 5, 16, 21, 0);
+		var json = new StringBuilder(rows * 140);
+		json.append("{\"total\":1667367,\"limit\":").append(rows).append(",\"dataset\":\"Elspotprices\",\"records\":[");
+		for (int i = 0; i < rows; i++) {
+			var hourUtc = start.minusHours(i / AREAS.length);
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"HourUTC\":\"").append(hourUtc)
+					.append(":00\",\"HourDK\":\"").append(hourUtc.plusHours(2))
+					.append(":00\",\"PriceArea\":\"").append(AREAS[i % AREAS.length])
+					.append("\",\"SpotPriceDKK\":").append(100 + i % 900).append('.').append(String.format("%06d", i * 7919L % 1_000_000))
+					.append(",\"SpotPriceEUR\":").append(10 + i % 90).append('.').append(String.format("%06d", i * 104729L % 1_000_000))
+					.append('}');
+		}
+		return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	static Flux<DataBuffer> chunked(byte[] body, int chunkSize) {
+		List<DataBuffer> buffers = new ArrayList<>();
+		for (int offset = 0; offset < body.length; offset += chunkSize) {
+			buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(
+					ByteBuffer.wrap(body, offset, Math.min(chunkSize, body.length - offset)).slice()));
+		}
+		return Flux.fromIterable(buffers);
+	}
+}
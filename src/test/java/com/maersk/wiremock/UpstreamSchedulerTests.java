@@ -0,0 +1,30 @@
+package com.maersk.wiremock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+class UpstreamSchedulerTests {
+
+	@Test
+	void testBackgroundCallsAreShedBelowReserve() {
+		final var scheduler = new UpstreamScheduler(10, Duration.ofHours(1), 0.2, Duration.ofMillis(100), new SimpleMeterRegistry());
+		final var headers = new HttpHeaders();
+		headers.set(UpstreamScheduler.TOTAL_CALLS, "10");
+		headers.set(UpstreamScheduler.REMAINING_CALLS, "1");
+		scheduler.observe(headers);
+
+		StepVerifier.create(scheduler.acquire(UpstreamPriority.SYNC))
+				.expectError(QuotaExceededException.class)
+				.verify();
+		// an export has a client waiting on it, so it queues like a foreground call
+		StepVerifier.create(scheduler.acquire(UpstreamPriority.EXPORT))
+				.verifyComplete();
+		StepVerifier.create(scheduler.acquire(UpstreamPriority.FOREGROUND))
+				.expectError(QuotaExceededException.class)
+				.verify(Duration.ofSeconds(5));
+	}
+}
@@ -0,0 +1,103 @@
+package com.maersk.wiremock;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Concurrent upstream calls through an {@link UpstreamTransport} against an in-process WireMock
+ * stub serving the recorded fixture, for a few pool sizes. Besides throughput it reports how
+ * many connections each iteration opened, which stays at zero once warmup has filled the pool
+ * and connections are being reused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class UpstreamTransportBenchmark {
+
+	@Param({"1", "4", "16"})
+	int maxConnections;
+
+	WireMockServer upstream;
+	UpstreamTransport transport;
+	HttpClient client;
+	final LongAdder connected = new LongAdder();
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Connections {
+
+		UpstreamTransportBenchmark benchmark;
+
+		@Setup(org.openjdk.jmh.annotations.Level.Iteration)
+		public void reset(UpstreamTransportBenchmark benchmark) {
+			this.benchmark = benchmark;
+		}
+
+		public long opened() {
+			return benchmark == null ? 0 : benchmark.connected.sumThenReset();
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+		upstream = new WireMockServer(options().dynamicPort().disableRequestJournal());
+		upstream.start();
+		upstream.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody(SyntheticPages.fixture())));
+		transport = new UpstreamTransport(maxConnections, 256, Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofMinutes(5),
+				Duration.ofSeconds(30), Duration.ofSeconds(2), Duration.ofSeconds(10), false, false, null);
+		var baseUrl = "http://localhost:" + upstream.port();
+		client = transport.httpClient(baseUrl)
+				.baseUrl(baseUrl)
+				.observe((connection, state) -> {
+					if (state == ConnectionObserver.State.CONNECTED) {
+						connected.increment();
+					}
+				});
+	}
+
+	@TearDown
+	public void tearDown() {
+		transport.destroy();
+		upstream.stop();
+	}
+
+	@Benchmark
+	public byte[] fetch(Connections connections) {
+		return client.get().uri("/dataset/Elspotprices").responseContent().aggregate().asByteArray().block();
+	}
+}
@@ -1,26 +1,67 @@
 package com.maersk.wiremock;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.recording.RecordSpec;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.util.RouteMatcher;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.ConnectionObserver;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.any;
 import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
 import static com.github.tomakehurst.wiremock.client.WireMock.configureFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.recordSpec;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @ActiveProfiles("test")
@@ -34,6 +75,30 @@ class WiremockApplicationTests {
 	@Autowired
 	EnergyApi energyApi;
 
+	@Autowired
+	EnergyDataCache energyDataCache;
+
+	@Autowired
+	PriceStore priceStore;
+
+	@Autowired
+	PriceSnapshot priceSnapshot;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Autowired
+	PublicationSchedule publicationSchedule;
+
+	@Autowired
+	UpstreamTransport upstreamTransport;
+
+	@Autowired
+	PriceRollups priceRollups;
+
+	@Autowired
+	LivePrices livePrices;
+
 	@BeforeAll
 	static void beforeAll() {
 		wireMockServer.start();
@@ -51,6 +116,12 @@ class WiremockApplicationTests {
 		wireMockServer.stop();
 	}
 
+	@BeforeEach
+	void beforeEach() {
+		energyDataCache.clear();
+		wireMockServer.resetRequests();
+	}
+
 	@Test
 	void testProxy() {
 		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
@@ -701,4 +772,861 @@ class WiremockApplicationTests {
 
 	}
 
+	@Test
+	void testCacheHonoursMaxAge() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "public, must-revalidate, max-age=57")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+
+		final var first = energyApi.fecthEnergyData().block();
+		final var second = energyApi.fecthEnergyData().block();
+
+		assertSame(first, second);
+		assertEquals(1, energyDataCache.hits());
+		wireMockServer.verify(1, getRequestedFor(urlEqualTo("/dataset/Elspotprices")));
+	}
+
+	@Test
+	void testNoCacheWinsWhereverItAppears() {
+		final var headers = new HttpHeaders();
+		headers.setCacheControl("max-age=60, no-cache");
+		assertEquals(Duration.ZERO, EnergyDataCache.ttlOf(headers));
+		headers.setCacheControl("private, max-age=60");
+		assertEquals(Duration.ZERO, EnergyDataCache.ttlOf(headers));
+		headers.setCacheControl("public, max-age=60");
+		assertEquals(Duration.ofSeconds(60), EnergyDataCache.ttlOf(headers));
+	}
+
+	@Test
+	void testNotModifiedReusesDecodedData() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "public, must-revalidate, max-age=0")
+						.withHeader("Last-Modified", "Tue, 16 May 2023 08:39:33 GMT")
+						.withHeader("ETag", "\"v1\"")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.withHeader("If-Modified-Since", equalTo("Tue, 16 May 2023 08:39:33 GMT"))
+				.withHeader("If-None-Match", equalTo("\"v1\""))
+				.willReturn(aResponse()
+						.withStatus(304)
+						.withHeader("Cache-Control", "public, must-revalidate, max-age=57")));
+
+		final var first = energyApi.fecthEnergyData().block();
+		final var stale = energyApi.fecthEnergyData().block();
+		awaitUntil(() -> energyDataCache.revalidations() == 1);
+		final var cached = energyApi.fecthEnergyData().block();
+
+		assertSame(first, stale);
+		assertSame(first, cached);
+		wireMockServer.verify(2, getRequestedFor(urlEqualTo("/dataset/Elspotprices")));
+		wireMockServer.verify(1, getRequestedFor(urlEqualTo("/dataset/Elspotprices"))
+				.withHeader("If-None-Match", equalTo("\"v1\"")));
+	}
+
+	@Test
+	void testRefetchAfterEvictionDuringRevalidationTakesQuota() throws Exception {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "public, must-revalidate, max-age=0")
+						.withHeader("ETag", "\"v1\"")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.withHeader("If-None-Match", equalTo("\"v1\""))
+				.willReturn(aResponse()
+						.withStatus(304)
+						.withFixedDelay(500)));
+		final var cache = new EnergyDataCache(64);
+		final var scheduler = new UpstreamScheduler(50, Duration.ofHours(1), 0.2, Duration.ofSeconds(1), new SimpleMeterRegistry());
+		final var api = energyApi(options -> {
+			options.cache = cache;
+			options.scheduler = scheduler;
+		});
+		api.fecthEnergyData().block();
+
+		final var revalidated = api.fecthEnergyData().toFuture();
+		Thread.sleep(200);
+		cache.clear();
+
+		assertEquals(100, revalidated.get().records.size());
+		wireMockServer.verify(3, getRequestedFor(urlEqualTo("/dataset/Elspotprices")));
+		assertEquals(47, (int) scheduler.tokens());
+	}
+
+	@Test
+	void testModifiedResponseReplacesCachedData() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "public, must-revalidate, max-age=0")
+						.withHeader("Last-Modified", "Tue, 16 May 2023 08:39:33 GMT")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+
+		final var first = energyApi.fecthEnergyData().block();
+		assertSame(first, energyApi.fecthEnergyData().block());
+		awaitUntil(() -> energyDataCache.getStale("/dataset/Elspotprices", Duration.ofHours(1)) != first);
+
+		final var refreshed = energyDataCache.getStale("/dataset/Elspotprices", Duration.ofHours(1));
+		assertNotSame(first, refreshed);
+		assertEquals(first.records.size(), refreshed.records.size());
+		wireMockServer.verify(1, getRequestedFor(urlEqualTo("/dataset/Elspotprices"))
+				.withHeader("If-Modified-Since", equalTo("Tue, 16 May 2023 08:39:33 GMT")));
+	}
+
+	@Test
+	void testStaleDataIsServedWhileUpstreamIsSlow() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "max-age=0")
+						.withHeader("Last-Modified", "Tue, 16 May 2023 08:39:33 GMT")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		final var first = energyApi.fecthEnergyData().block();
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "max-age=57")
+						.withFixedDelay(2000)
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+
+		final long started = System.nanoTime();
+		assertSame(first, energyApi.fecthEnergyData().block());
+		assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() < 1000);
+		awaitUntil(() -> energyDataCache.get("/dataset/Elspotprices") != null);
+		assertNotSame(first, energyApi.fecthEnergyData().block());
+	}
+
+	@Test
+	void testStaleDataIsServedWhenUpstreamFails() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "max-age=0")
+						.withHeader("Last-Modified", "Tue, 16 May 2023 08:39:33 GMT")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		final var first = energyApi.fecthEnergyData().block();
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse().withStatus(500)));
+
+		assertSame(first, energyApi.fecthEnergyData().block());
+		awaitUntil(() -> wireMockServer.findAll(getRequestedFor(anyUrl())).size() == 2);
+		assertSame(first, energyApi.fecthEnergyData().block());
+
+		energyDataCache.clear();
+		WebTestClient.bindToRouterFunction(router.data(energyApi))
+				.build()
+				.get()
+				.uri("/data")
+				.exchange()
+				.expectStatus()
+				.isEqualTo(502);
+	}
+
+	@Test
+	void testUpstreamAndServingPathIsMetered() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		final long calls = meterRegistry.get("energy.upstream").tag("outcome", "success").timer().count();
+
+		WebTestClient.bindToRouterFunction(router.data(energyApi))
+				.build()
+				.get()
+				.uri("/data")
+				.exchange()
+				.expectStatus()
+				.isOk();
+
+		assertEquals(calls + 1, meterRegistry.get("energy.upstream").tag("outcome", "success").timer().count());
+		assertTrue(meterRegistry.get("energy.upstream.first-byte").timer().count() > 0);
+		assertTrue(meterRegistry.get("energy.upstream.decode").timer().count() > 0);
+		assertTrue(meterRegistry.get("energy.upstream.payload").summary().totalAmount() > 0);
+		assertTrue(meterRegistry.get("energy.response.payload").tag("format", "json").summary().count() > 0);
+		assertTrue(meterRegistry.get("energy.response.serialization").tag("format", "json").timer().count() > 0);
+		meterRegistry.get("reactor.netty.connection.provider.total.connections").tag("name", "energy-upstream").gauge();
+
+		energyDataCache.clear();
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse().withStatus(503)));
+		StepVerifier.create(energyApi.fecthEnergyData())
+				.expectError()
+				.verify();
+		assertTrue(meterRegistry.get("energy.upstream.errors").tag("cause", "http_503").counter().count() > 0);
+	}
+
+	@Test
+	void testQuotaAndBackgroundRefreshErrorsAreMetered() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "max-age=0")
+						.withHeader("ETag", "\"v1\"")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		final var registry = new SimpleMeterRegistry();
+		// one call an hour, and hardly any waiting for the next
+		final var scheduler = new UpstreamScheduler(1, Duration.ofHours(1), 0, Duration.ofMillis(100), new SimpleMeterRegistry());
+		final var api = energyApi(options -> {
+			options.staleWhileRevalidate = true;
+			options.scheduler = scheduler;
+			options.registry = registry;
+		});
+		final var first = api.fecthEnergyData().block();
+
+		// the refresh behind the stale copy is rejected for quota
+		assertSame(first, api.fecthEnergyData().block());
+		awaitUntil(() -> registry.find("energy.upstream.errors").tag("cause", "quota").counter() != null);
+		assertEquals(1, registry.get("energy.upstream.errors").tag("cause", "quota").counter().count());
+	}
+
+	@Test
+	void testQuotaShedCallIsAnsweredWithRetryAfter() {
+		final var scheduler = new UpstreamScheduler(1, Duration.ofHours(1), 0, Duration.ofMillis(100), new SimpleMeterRegistry());
+		final var api = energyApi(options -> {
+			options.staleWhileRevalidate = true;
+			options.scheduler = scheduler;
+		});
+		scheduler.acquire(UpstreamPriority.FOREGROUND).block();
+		// a plain instance, as the configuration proxy would hand back the context's route
+		final var metrics = new EnergyMetrics(new SimpleMeterRegistry());
+		final var plainRouter = new Router(1000, 10000, Duration.ofSeconds(5), 10000, priceStore,
+				new EncodedResponses(new ObjectMapper(), 64, true, metrics), metrics);
+
+		WebTestClient.bindToRouterFunction(plainRouter.data(api))
+				.build()
+				.get()
+				.uri("/data")
+				.exchange()
+				.expectStatus()
+				.isEqualTo(503)
+				.expectHeader()
+				.value("Retry-After", retryAfter -> assertTrue(Long.parseLong(retryAfter) > 0, retryAfter));
+		wireMockServer.verify(0, getRequestedFor(urlPathEqualTo("/dataset/Elspotprices")));
+	}
+
+	@Test
+	void testUpstreamConnectionsAreReused() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		final var transport = new UpstreamTransport(4, 256, Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofMinutes(5),
+				Duration.ofSeconds(30), Duration.ofSeconds(2), Duration.ofSeconds(10), false, true, null);
+		final var connected = new AtomicInteger();
+		final var acquired = new AtomicInteger();
+		final var client = WebClient.builder()
+				.baseUrl("http://localhost:8081")
+				.clientConnector(new ReactorClientHttpConnector(transport.httpClient("http://localhost:8081")
+						.observe((connection, state) -> {
+							if (state == ConnectionObserver.State.CONNECTED) {
+								connected.incrementAndGet();
+							} else if (state == ConnectionObserver.State.ACQUIRED) {
+								acquired.incrementAndGet();
+							}
+						})))
+				.build();
+		try {
+			final long ok = Flux.range(0, 200)
+					.flatMap(i -> client.get().uri("/dataset/Elspotprices").retrieve().toBodilessEntity(), 16)
+					.filter(response -> response.getStatusCode().is2xxSuccessful())
+					.count()
+					.block(Duration.ofSeconds(30));
+
+			assertEquals(200, ok);
+			assertTrue(connected.get() > 0 && connected.get() <= 4, connected + " connections opened for 200 requests");
+			assertTrue(acquired.get() >= 196, acquired + " pooled connections acquired");
+		} finally {
+			transport.destroy();
+		}
+	}
+
+	@Test
+	void testUnsharedEventLoopsAreDedicated() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse().withHeader("Content-Type", "application/json").withBody("{\"records\":[]}")));
+		final var transport = new UpstreamTransport(4, 256, Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofMinutes(5),
+				Duration.ofSeconds(30), Duration.ofSeconds(2), Duration.ofSeconds(10), false, false, null);
+		try {
+			final String thread = transport.httpClient("http://localhost:8081")
+					.get()
+					.uri("http://localhost:8081/dataset/Elspotprices")
+					.responseContent()
+					.aggregate()
+					.map(body -> Thread.currentThread().getName())
+					.block(Duration.ofSeconds(10));
+
+			assertTrue(thread.startsWith(UpstreamTransport.POOL_NAME), thread);
+		} finally {
+			transport.destroy();
+		}
+	}
+
+	@Test
+	void testSlowUpstreamCallIsHedged() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.inScenario("hedge")
+				.whenScenarioStateIs(Scenario.STARTED)
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withFixedDelay(3000)
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json"))
+				.willSetStateTo("warm"));
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.inScenario("hedge")
+				.whenScenarioStateIs("warm")
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withUniformRandomDelay(10, 50)
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		final var scheduler = new UpstreamScheduler(50, Duration.ofHours(1), 0.2, Duration.ofSeconds(1), new SimpleMeterRegistry());
+		final var hedged = energyApi(options -> {
+			options.scheduler = scheduler;
+			options.hedging = new UpstreamHedging(true, 0.95, Duration.ofMillis(200), Duration.ofMillis(50));
+		});
+
+		final long started = System.nanoTime();
+		assertEquals(100, hedged.fecthEnergyData().block().records.size());
+
+		assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() < 1500);
+		wireMockServer.verify(2, getRequestedFor(urlEqualTo("/dataset/Elspotprices")));
+		assertTrue(scheduler.tokens() < 48.1, "the hedged attempt takes its own quota token");
+	}
+
+	@Test
+	void testDeadlineBoundsUpstreamWait() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withFixedDelay(3000)
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		// not coalesced, so giving up cancels the upstream call instead of leaving it to later tests
+		final var uncoalesced = energyApi(options -> {
+		});
+
+		final long started = System.nanoTime();
+		StepVerifier.create(uncoalesced.fecthEnergyData().contextWrite(Deadline.in(Duration.ofMillis(200))))
+				.expectError(TimeoutException.class)
+				.verify();
+		assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() < 1500);
+	}
+
+	@Test
+	void testUnchangedDataIsAnsweredWithNotModified() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "public, must-revalidate, max-age=57")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		final var client = WebTestClient.bindToRouterFunction(router.data(energyApi)).build();
+
+		final var etag = client.get()
+				.uri("/data")
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectHeader()
+				.contentType(MediaType.APPLICATION_JSON)
+				.expectBody(EnergyData.class)
+				.consumeWith(res -> assertEquals(100, res.getResponseBody().records.size()))
+				.returnResult()
+				.getResponseHeaders()
+				.getETag();
+
+		client.get()
+				.uri("/data")
+				.ifNoneMatch(etag)
+				.exchange()
+				.expectStatus()
+				.isNotModified()
+				.expectHeader()
+				.valueEquals("ETag", etag)
+				.expectBody()
+				.isEmpty();
+	}
+
+	@Test
+	void testGzipVariantIsServedWhenAccepted() throws Exception {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "public, must-revalidate, max-age=57")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		final var client = WebTestClient.bindToRouterFunction(router.data(energyApi)).build();
+
+		final var plain = client.get()
+				.uri("/data")
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectHeader()
+				.doesNotExist("Content-Encoding")
+				.expectBody()
+				.returnResult();
+		final var gzipped = client.get()
+				.uri("/data")
+				.header("Accept-Encoding", "br;q=1.0, gzip;q=0.8")
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectHeader()
+				.valueEquals("Content-Encoding", "gzip")
+				.expectHeader()
+				.valueEquals("Vary", "Accept", "Accept-Encoding")
+				.expectBody()
+				.returnResult();
+
+		try (var in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponseBody()))) {
+			assertArrayEquals(plain.getResponseBody(), in.readAllBytes());
+		}
+		assertTrue(gzipped.getResponseBody().length < plain.getResponseBody().length / 4);
+		assertNotEquals(plain.getResponseHeaders().getETag(), gzipped.getResponseHeaders().getETag());
+	}
+
+	@Test
+	void testBinaryFormatsAreNegotiated() throws Exception {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "public, must-revalidate, max-age=57")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		final var client = WebTestClient.bindToRouterFunction(router.data(energyApi)).build();
+		final var json = energyApi.fecthEnergyData().block();
+
+		final var cbor = client.get()
+				.uri("/data")
+				.accept(MediaType.parseMediaType("application/cbor"), MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectHeader()
+				.contentType("application/cbor")
+				.expectBody()
+				.returnResult()
+				.getResponseBody();
+		final var first = new ObjectMapper(new CBORFactory()).readTree(cbor).get("records").get(0);
+		assertTrue(first.get("SpotPriceDKK").isNumber());
+		assertEquals(Double.parseDouble(json.records.get(0).SpotPriceDKK), first.get("SpotPriceDKK").doubleValue());
+
+		final var smile = client.get()
+				.uri("/data")
+				.accept(MediaType.parseMediaType("application/x-jackson-smile"))
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectBody()
+				.returnResult()
+				.getResponseBody();
+		assertEquals(100, new ObjectMapper(new SmileFactory()).readTree(smile).get("records").size());
+
+		final var compact = client.get()
+				.uri("/data")
+				.accept(MediaType.parseMediaType("application/x-energy-prices"))
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectBody()
+				.returnResult()
+				.getResponseBody();
+		final var records = CompactPriceFormat.decode(compact);
+		assertEquals(100, records.size());
+		assertEquals(json.records.get(99).HourUTC, records.get(99).HourUTC);
+		assertEquals(json.records.get(99).PriceArea, records.get(99).PriceArea);
+		assertEquals(new BigDecimal(json.records.get(99).SpotPriceEUR), new BigDecimal(records.get(99).SpotPriceEUR));
+		assertTrue(compact.length < cbor.length / 4);
+	}
+
+	@Test
+	void testConcurrentRequestsAreCoalesced() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withHeader("Cache-Control", "no-store")
+						.withFixedDelay(1000)
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+
+		final var results = Flux.range(0, 5000)
+				.flatMap(i -> energyApi.fecthEnergyData(), 5000)
+				.collectList()
+				.block();
+
+		assertEquals(5000, results.size());
+		assertTrue(results.stream().allMatch(data -> data == results.get(0)));
+		wireMockServer.verify(1, getRequestedFor(urlEqualTo("/dataset/Elspotprices")));
+	}
+
+	@Test
+	void testExportWalksAllPages() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices?limit=2"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody("{\"records\":[{\"PriceArea\":\"DK1\"},{\"PriceArea\":\"DK2\"}]}")));
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices?offset=2&limit=2"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody("{\"records\":[{\"PriceArea\":\"NO2\"}]}")));
+
+		WebTestClient.bindToRouterFunction(router.export(energyApi))
+				.build()
+				.get()
+				.uri("/data/export?pageSize=2")
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectBodyList(EnergyDataRecord.class)
+				.consumeWith(res -> {
+					final var body = res.getResponseBody();
+					assertEquals(3, body.size());
+					assertEquals("NO2", body.get(2).PriceArea);
+				});
+	}
+
+	@Test
+	void testInvalidExportPageSizeIsRejected() {
+		final var client = WebTestClient.bindToRouterFunction(router.export(energyApi)).build();
+		for (String pageSize : List.of("abc", "0", "-5")) {
+			client.get()
+					.uri("/data/export?pageSize=" + pageSize)
+					.exchange()
+					.expectStatus()
+					.isBadRequest();
+		}
+		wireMockServer.verify(0, getRequestedFor(anyUrl()));
+	}
+
+	@Test
+	void testFilteredQueryIsServedFromLocalIndex() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		energyApi.fecthEnergyData().block();
+		wireMockServer.resetRequests();
+
+		WebTestClient.bindToRouterFunction(router.data(energyApi))
+				.build()
+				.get()
+				.uri("/data?area=DK1&from=2023-05-16T19:00&to=2023-05-16T23:00&zone=DK")
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectBody(EnergyData.class)
+				.consumeWith(res -> {
+					final var body = res.getResponseBody();
+					assertEquals(4, body.records.size());
+					assertEquals("2023-05-16T17:00:00", body.records.get(0).HourUTC);
+					assertEquals("2023-05-16T19:00:00", body.records.get(0).HourDK);
+					assertEquals("DK1", body.records.get(3).PriceArea);
+				});
+		wireMockServer.verify(0, getRequestedFor(anyUrl()));
+	}
+
+	@Test
+	void testRollupRangeIsClampedToHeldDays() throws Exception {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		energyApi.fecthEnergyData().block();
+		priceRollups.flush();
+		final var client = WebTestClient.bindToRouterFunction(router.rollups(priceRollups)).build();
+
+		final var held = client.get().uri("/data/rollups?area=DK1")
+				.exchange().expectStatus().isOk()
+				.expectBodyList(PriceRollup.class).returnResult().getResponseBody();
+		final var wide = client.get().uri("/data/rollups?area=DK1&from=0001-01-01&to=9999-12-31")
+				.exchange().expectStatus().isOk()
+				.expectBodyList(PriceRollup.class).returnResult().getResponseBody();
+
+		assertFalse(held.isEmpty());
+		assertEquals(held.size(), wide.size());
+		assertEquals(held.get(0).Period, wide.get(0).Period);
+	}
+
+	@Test
+	void testUncoveredQueryIsPushedDownUpstream() {
+		wireMockServer.stubFor(get(urlPathEqualTo("/dataset/Elspotprices"))
+				.withQueryParam("filter", equalTo("{\"PriceArea\":[\"SE4\"]}"))
+				.withQueryParam("start", equalTo("2032-03-01T00:00"))
+				.withQueryParam("end", equalTo("2032-03-02T00:00"))
+				.withQueryParam("columns", equalTo("HourUTC,HourDK,PriceArea,SpotPriceDKK,SpotPriceEUR"))
+				.withQueryParam("sort", equalTo("HourUTC desc"))
+				.withQueryParam("limit", equalTo("2"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody("{\"total\":24,\"limit\":2,\"dataset\":\"Elspotprices\",\"records\":["
+								+ "{\"HourUTC\":\"2032-03-01T23:00:00\",\"HourDK\":\"2032-03-02T00:00:00\",\"PriceArea\":\"SE4\",\"SpotPriceDKK\":410.5,\"SpotPriceEUR\":55.1},"
+								+ "{\"HourUTC\":\"2032-03-01T22:00:00\",\"HourDK\":\"2032-03-01T23:00:00\",\"PriceArea\":\"SE4\",\"SpotPriceDKK\":400.25,\"SpotPriceEUR\":53.7}]}")));
+
+		WebTestClient.bindToRouterFunction(router.data(energyApi))
+				.build()
+				.get()
+				.uri("/data?area=SE4&from=2032-03-01&to=2032-03-02&sort=desc&limit=2")
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectBody(EnergyData.class)
+				.consumeWith(res -> {
+					final var body = res.getResponseBody();
+					assertEquals(2, body.records.size());
+					assertEquals("2032-03-01T23:00:00", body.records.get(0).HourUTC);
+					assertEquals("400.25", body.records.get(1).SpotPriceDKK);
+				});
+		wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/dataset/Elspotprices")));
+
+		// rows cut short by the limit are not held, so the day is not answered locally from them
+		wireMockServer.stubFor(get(urlPathEqualTo("/dataset/Elspotprices"))
+				.withQueryParam("filter", equalTo("{\"PriceArea\":[\"SE4\"]}"))
+				.withQueryParam("start", equalTo("2032-03-01T22:00"))
+				.withQueryParam("limit", equalTo("10001"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody("{\"records\":["
+								+ "{\"HourUTC\":\"2032-03-01T22:00:00\",\"HourDK\":\"2032-03-01T23:00:00\",\"PriceArea\":\"SE4\",\"SpotPriceDKK\":400.25,\"SpotPriceEUR\":53.7},"
+								+ "{\"HourUTC\":\"2032-03-01T23:00:00\",\"HourDK\":\"2032-03-02T00:00:00\",\"PriceArea\":\"SE4\",\"SpotPriceDKK\":410.5,\"SpotPriceEUR\":55.1}]}")));
+		assertFalse(priceStore.covers(new byte[]{PriceAreas.code("SE4")}, PriceColumns.epochHour(LocalDateTime.parse("2032-03-01T22:00")),
+				PriceColumns.epochHour(LocalDateTime.parse("2032-03-02T00:00"))));
+
+		// a complete range pushed down is held afterwards, and answered locally in the order upstream would use
+		final var client = WebTestClient.bindToRouterFunction(router.data(energyApi)).build();
+		for (int i = 0; i < 2; i++) {
+			client.get()
+					.uri("/data?area=SE4&from=2032-03-01T22:00&to=2032-03-02T00:00&limit=" + (i == 0 ? "" : "1"))
+					.exchange()
+					.expectStatus()
+					.isOk()
+					.expectBody(EnergyData.class)
+					.consumeWith(res -> assertEquals("2032-03-01T22:00:00", res.getResponseBody().records.get(0).HourUTC));
+		}
+		wireMockServer.verify(2, getRequestedFor(urlPathEqualTo("/dataset/Elspotprices")));
+
+		// the rest of the day is still not held
+		assertFalse(priceStore.covers(new byte[]{PriceAreas.code("SE4")}, PriceColumns.epochHour(LocalDateTime.parse("2032-03-01T00:00")),
+				PriceColumns.epochHour(LocalDateTime.parse("2032-03-02T00:00"))));
+	}
+
+	@Test
+	void testUnlimitedQueryBeyondMaxRowsIsRejected() {
+		wireMockServer.stubFor(get(urlPathEqualTo("/dataset/Elspotprices"))
+				.withQueryParam("filter", equalTo("{\"PriceArea\":[\"SE1\"]}"))
+				.withQueryParam("limit", equalTo("10001"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody(new String(SyntheticPages.json(10001)))));
+		final var client = WebTestClient.bindToRouterFunction(router.data(energyApi)).build();
+
+		client.get().uri("/data?area=SE1").exchange().expectStatus().isBadRequest();
+		client.get().uri("/data?area=SE1&limit=10001").exchange().expectStatus().isBadRequest();
+		wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/dataset/Elspotprices")));
+	}
+
+	@Test
+	void testFieldsAreProjected() {
+		wireMockServer.stubFor(get(urlEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBodyFile("dataset_elspotprices-c4c05d2f-7367-4456-968c-169ee85be779.json")));
+		final var client = WebTestClient.bindToRouterFunction(router.data(energyApi)).build();
+		final byte[] full = client.get().uri("/data").exchange().expectBody().returnResult().getResponseBody();
+
+		final byte[] projected = client.get().uri("/data?fields=PriceArea,spotpricedkk")
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectBody()
+				.returnResult()
+				.getResponseBody();
+		final String json = new String(projected);
+		assertTrue(json.startsWith("{\"records\":[{\"PriceArea\":\"DK1\",\"SpotPriceDKK\":\""), json);
+		assertTrue(!json.contains("HourDK") && !json.contains("SpotPriceEUR"));
+		assertTrue(projected.length < full.length / 2);
+
+		client.get().uri("/data?fields=Price").exchange().expectStatus().isBadRequest();
+	}
+
+	@Test
+	void testProjectionIsPushedDownUpstream() {
+		wireMockServer.stubFor(get(urlPathEqualTo("/dataset/Elspotprices"))
+				.withQueryParam("filter", equalTo("{\"PriceArea\":[\"NO2\"]}"))
+				.withQueryParam("columns", equalTo("PriceArea,SpotPriceEUR"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody("{\"records\":[{\"HourUTC\":\"2033-01-01T00:00:00\",\"PriceArea\":\"NO2\",\"SpotPriceDKK\":1.5,\"SpotPriceEUR\":0.2}]}")));
+		final long serialized = meterRegistry.get("energy.response.serialization").tag("format", "json").timer().count();
+
+		WebTestClient.bindToRouterFunction(router.data(energyApi))
+				.build()
+				.get()
+				.uri("/data?area=NO2&from=2033-01-01&to=2033-01-02&fields=PriceArea,SpotPriceEUR")
+				.exchange()
+				.expectStatus()
+				.isOk()
+				.expectBody(EnergyData.class)
+				.consumeWith(res -> {
+					final var record = res.getResponseBody().records.get(0);
+					assertEquals("NO2", record.PriceArea);
+					assertEquals("0.2", record.SpotPriceEUR);
+					assertEquals(null, record.HourUTC);
+					assertEquals(null, record.SpotPriceDKK);
+				});
+		// written once, with just the requested fields
+		assertEquals(serialized + 1, meterRegistry.get("energy.response.serialization").tag("format", "json").timer().count());
+		// rows missing prices are not ingested over what the store holds
+		assertTrue(priceStore.maxHour(PriceAreas.code("NO2")) < PriceColumns.epochHour(LocalDateTime.parse("2033-01-01T00:00")));
+	}
+
+	@Test
+	void testInvalidLimitIsRejected() {
+		WebTestClient.bindToRouterFunction(router.data(energyApi))
+				.build()
+				.get()
+				.uri("/data?limit=-1")
+				.exchange()
+				.expectStatus()
+				.isBadRequest();
+	}
+
+	@Test
+	void testMalformedOrUnknownAreaIsRejected() {
+		final var client = WebTestClient.bindToRouterFunction(router.data(energyApi)).build();
+		client.get()
+				.uri(builder -> builder.path("/data").queryParam("area", "{area}").build("DK1\"],\"HourUTC\":[\"x"))
+				.exchange()
+				.expectStatus()
+				.isBadRequest();
+		client.get().uri("/data?area=XX7").exchange().expectStatus().isBadRequest();
+		wireMockServer.verify(0, getRequestedFor(urlPathEqualTo("/dataset/Elspotprices")));
+	}
+
+	@Test
+	void testInvalidLiveSubscriptionIsRejected() {
+		final var client = WebTestClient.bindToRouterFunction(router.live(livePrices)).build();
+		client.get().uri("/data/live?area=XX7").exchange().expectStatus().isBadRequest();
+		client.get().uri("/data/live?from=yesterday").exchange().expectStatus().isBadRequest();
+		assertEquals(0, livePrices.subscribers());
+	}
+
+	@Test
+	void testSyncOnlyRequestsRowsAfterWatermark(@TempDir Path checkpoint) {
+		wireMockServer.stubFor(get(urlPathEqualTo("/dataset/Elspotprices"))
+				.withQueryParam("sort", equalTo("HourUTC asc"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody("{\"records\":[" +
+								"{\"HourUTC\":\"2030-01-01T00:00:00\",\"PriceArea\":\"DK1\",\"SpotPriceDKK\":1.5}," +
+								"{\"HourUTC\":\"2030-01-01T01:00:00\",\"PriceArea\":\"DK1\",\"SpotPriceDKK\":2.5}]}")));
+		wireMockServer.stubFor(get(urlPathEqualTo("/dataset/Elspotprices"))
+				.withQueryParam("start", equalTo("2030-01-01T02:00"))
+				.withQueryParam("filter", equalTo("{\"PriceArea\":[\"DK1\"]}"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody("{\"records\":[]}")));
+
+		final var sync = new PriceSync(energyApi, priceStore, priceSnapshot, checkpoint.resolve("sync.properties"), Duration.ofDays(1), 100, false, publicationSchedule);
+		assertEquals(2, sync.sync().block());
+		assertEquals(LocalDateTime.parse("2030-01-01T01:00"), sync.watermarks().get("DK1"));
+
+		final var restarted = new PriceSync(energyApi, priceStore, priceSnapshot, checkpoint.resolve("sync.properties"), Duration.ofDays(1), 100, false, publicationSchedule);
+		assertEquals(0, restarted.sync().block());
+		wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/dataset/Elspotprices"))
+				.withQueryParam("start", equalTo("2030-01-01T02:00")));
+	}
+
+	@Test
+	void testWatermarkWithoutHeldRowsIsNotRestored(@TempDir Path checkpoint) {
+		new Checkpoint(checkpoint.resolve("sync.properties")).put("XX9", "2030-06-01T00:00");
+
+		final var sync = new PriceSync(energyApi, priceStore, priceSnapshot, checkpoint.resolve("sync.properties"), Duration.ofDays(1), 100, false, publicationSchedule);
+
+		assertTrue(sync.watermarks().isEmpty());
+		assertEquals(List.of(EnergyQuery.since(LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS).minusDays(1), 100).toUri()),
+				sync.plan().stream().map(EnergyQuery::toUri).collect(Collectors.toList()));
+	}
+
+	@Test
+	void testBackfillRetriesWindowsAndResumesFromCheckpoint(@TempDir Path checkpoint) {
+		wireMockServer.stubFor(get(urlPathEqualTo("/dataset/Elspotprices"))
+				.withQueryParam("start", equalTo("2031-01-01T00:00"))
+				.withQueryParam("end", equalTo("2031-01-02T00:00"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody("{\"records\":[{\"HourUTC\":\"2031-01-01T00:00:00\",\"PriceArea\":\"DK1\",\"SpotPriceDKK\":1.5}]}")));
+		wireMockServer.stubFor(get(urlPathEqualTo("/dataset/Elspotprices"))
+				.withQueryParam("start", equalTo("2031-01-02T00:00"))
+				.inScenario("backfill")
+				.whenScenarioStateIs(Scenario.STARTED)
+				.willReturn(aResponse().withStatus(503))
+				.willSetStateTo("recovered"));
+		wireMockServer.stubFor(get(urlPathEqualTo("/dataset/Elspotprices"))
+				.withQueryParam("start", equalTo("2031-01-02T00:00"))
+				.withQueryParam("end", equalTo("2031-01-03T00:00"))
+				.inScenario("backfill")
+				.whenScenarioStateIs("recovered")
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody("{\"records\":[{\"HourUTC\":\"2031-01-02T00:00:00\",\"PriceArea\":\"DK1\",\"SpotPriceDKK\":2.5}]}")));
+
+		final var backfill = new PriceBackfill(energyApi, priceStore, checkpoint.resolve("backfill.properties"), List.of("DK1"),
+				Period.ofDays(1), 2, 2, Duration.ofMillis(10), 100, "", false);
+		assertEquals(2, backfill.backfill(LocalDate.parse("2031-01-01"), LocalDate.parse("2031-01-03")).block());
+		wireMockServer.verify(3, getRequestedFor(urlPathEqualTo("/dataset/Elspotprices")));
+
+		wireMockServer.resetRequests();
+		final var resumed = new PriceBackfill(energyApi, priceStore, checkpoint.resolve("backfill.properties"), List.of("DK1"),
+				Period.ofDays(1), 2, 2, Duration.ofMillis(10), 100, "", false);
+		assertEquals(0, resumed.backfill(LocalDate.parse("2031-01-01"), LocalDate.parse("2031-01-03")).block());
+		wireMockServer.verify(0, getRequestedFor(anyUrl()));
+	}
+
+	@Test
+	void testBackfillWaitsOutQuotaShedding(@TempDir Path checkpoint) {
+		wireMockServer.stubFor(get(urlPathEqualTo("/dataset/Elspotprices"))
+				.willReturn(aResponse()
+						.withHeader("Content-Type", "application/json")
+						.withBody("{\"records\":[]}")));
+		// 4 calls a second, half of them held back for foreground calls
+		final var scheduler = new UpstreamScheduler(4, Duration.ofSeconds(1), 0.5, Duration.ofSeconds(1), new SimpleMeterRegistry());
+		final var api = energyApi(options -> options.scheduler = scheduler);
+		final var backfill = new PriceBackfill(api, priceStore, checkpoint.resolve("backfill.properties"), List.of("DK1"),
+				Period.ofDays(1), 4, 1, Duration.ofMillis(10), 100, "", false);
+
+		assertEquals(0, backfill.backfill(LocalDate.parse("2034-01-01"), LocalDate.parse("2034-01-09")).block(Duration.ofSeconds(30)));
+		wireMockServer.verify(8, getRequestedFor(urlPathEqualTo("/dataset/Elspotprices")));
+	}
+
+	/**
+	 * A separate {@link EnergyApi} against the stub, uncoalesced and without stale serving unless
+	 * {@code options} say otherwise.
+	 */
+	private EnergyApi energyApi(Consumer<ApiOptions> options) {
+		final var api = new ApiOptions();
+		options.accept(api);
+		return new EnergyApi("http://localhost:8081", api.coalescing, api.staleWhileRevalidate, Duration.ofHours(1), Duration.ofSeconds(10),
+				api.cache, priceStore, api.scheduler, api.hedging, new EnergyMetrics(api.registry), publicationSchedule, upstreamTransport);
+	}
+
+	static final class ApiOptions {
+
+		boolean coalescing;
+		boolean staleWhileRevalidate;
+		EnergyDataCache cache = new EnergyDataCache(64);
+		UpstreamScheduler scheduler = new UpstreamScheduler(50, Duration.ofHours(1), 0.2, Duration.ofSeconds(1), new SimpleMeterRegistry());
+		UpstreamHedging hedging = new UpstreamHedging(false, 0.95, Duration.ofSeconds(1), Duration.ofMillis(100));
+		MeterRegistry registry = new SimpleMeterRegistry();
+	}
+
+	private static void awaitUntil(BooleanSupplier condition) {
+		final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "condition not met within 10s");
+			LockSupport.parkNanos(Duration.ofMillis(10).toNanos());
+		}
+	}
+
 }